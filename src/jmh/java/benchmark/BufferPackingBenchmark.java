@@ -0,0 +1,75 @@
+package benchmark;
+
+import org.lwjgl.BufferUtils;
+import org.openjdk.jmh.annotations.*;
+import renderer.asset.AssetManager;
+import renderer.asset.Material;
+import renderer.entity.SceneManager;
+import renderer.entity.Shape;
+import shape.SphereShape;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BufferPackingBenchmark {
+
+    @Param({"1024", "16384"})
+    public int count;
+
+    private List<Shape> shapes;
+    private List<Material> materials;
+    private ByteBuffer shapeBuffer;
+    private ByteBuffer materialBuffer;
+
+    @Setup
+    public void setup() {
+        // Headless managers, nothing is uploaded
+        SceneManager sceneManager = new SceneManager();
+        AssetManager assetManager = new AssetManager();
+        SphereShape.Type type = new SphereShape.Type();
+
+        this.shapes = new ArrayList<>();
+        this.materials = new ArrayList<>();
+        for (int i = 0; i < this.count; i++) {
+            Material material = assetManager.createMaterial();
+            material.setAlbedo(i % 3, i % 5, i % 7);
+            material.setMetallic(0.5f);
+            material.setRoughness(0.25f);
+            this.materials.add(material);
+
+            Shape shape = sceneManager.createShape();
+            shape.setType(type);
+            shape.setMaterial(material);
+            shape.setPosition(i, i * 0.5f, -i);
+            shape.setF0(0, 0, 0, 1.0f);
+            this.shapes.add(shape);
+        }
+
+        this.shapeBuffer = BufferUtils.createByteBuffer(this.count * Shape.BYTE_COUNT);
+        this.materialBuffer = BufferUtils.createByteBuffer(this.count * Material.BYTE_COUNT);
+    }
+
+    @Benchmark
+    public ByteBuffer writeShapes() {
+        for (Shape shape : this.shapes) {
+            shape.writeBuffer(this.shapeBuffer);
+        }
+        return this.shapeBuffer;
+    }
+
+    @Benchmark
+    public ByteBuffer writeMaterials() {
+        for (Material material : this.materials) {
+            material.writeBuffer(this.materialBuffer);
+        }
+        return this.materialBuffer;
+    }
+}
\ No newline at end of file
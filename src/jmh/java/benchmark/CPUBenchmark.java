@@ -0,0 +1,111 @@
+package benchmark;
+
+import org.joml.Vector3f;
+import org.openjdk.jmh.annotations.*;
+import renderer.RenderCamera;
+import renderer.RenderMaterial;
+import renderer.RenderShape;
+import renderer.cpu.CPURenderContext;
+import shape.*;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 4, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CPUBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    @Param({"640"})
+    public int width;
+
+    @Param({"360"})
+    public int height;
+
+    private CPURenderContext context;
+    private long iterationStart;
+
+    private static void createScene(CPURenderContext context) {
+        // Same scene as Application
+        RenderMaterial material0 = context.createMaterial();
+        material0.setAlbedo(1.0f, 0.0f, 0.0f);
+        material0.setMetallic(0.5f);
+        material0.setRoughness(0.9f);
+        RenderMaterial material1 = context.createMaterial();
+        material1.setAlbedo(1.0f, 1.0f, 1.0f);
+        material1.setMetallic(0.0f);
+        material1.setRoughness(0.0f);
+
+        RenderShape sponge = context.createShape();
+        sponge.setType(new MengerSpongeShape.Type());
+        sponge.setMaterial(material1);
+
+        RenderShape sphere = context.createShape();
+        sphere.setType(new SphereShape.Type());
+        sphere.setF0(0, 0, 0, 1.0f);
+        sphere.setMaterial(material0);
+        sphere.setPosition(0, 15, 0);
+
+        Vector3f normal = new Vector3f(0, 1, 0);
+        RenderShape plane = context.createShape();
+        plane.setType(new PlaneShape.Type());
+        plane.setF0(0, 0, 0, -7);
+        plane.setF1(normal.x, normal.y, normal.z, 0);
+        plane.setMaterial(material1);
+
+        RenderShape box = context.createShape();
+        box.setType(new RoundBoxShape.Type());
+        box.setF0(0, 0, 0, 0);
+        box.setF1(10, 30, 1, 0);
+        box.setMaterial(material1);
+        box.setPosition(0, 0, 5);
+
+        RenderShape boxFrame = context.createShape();
+        boxFrame.setType(new BoxFrameShape.Type());
+        boxFrame.setF0(0, 0, 0, 0.3f);
+        boxFrame.setF1(3, 3, 5, 0);
+        boxFrame.setMaterial(material0);
+        boxFrame.setPosition(30, 3, 0);
+
+        RenderCamera camera = context.getActiveCamera();
+        camera.setEye(0, 0, 40);
+        camera.setCenter(0, 0, 39);
+        camera.setUp(0, 1, 0);
+    }
+
+    @Setup
+    public void setup() {
+        this.context = new CPURenderContext(this.width, this.height, this.threads);
+        createScene(this.context);
+    }
+
+    @Setup(Level.Iteration)
+    public void startIteration() {
+        this.context.resetRayCount();
+        this.iterationStart = System.nanoTime();
+    }
+
+    @Benchmark
+    public CPURenderContext renderFrame() {
+        this.context.render();
+        return this.context;
+    }
+
+    @TearDown(Level.Iteration)
+    public void endIteration() {
+        // Throughput per core, a flat column means the renderer scales with the thread count
+        double seconds = (double)(System.nanoTime() - this.iterationStart) / 1e9;
+        double mrays = (double)this.context.getRayCount() / seconds / 1e6;
+        System.out.println(String.format("  %.2f Mrays/s, %.2f Mrays/s/core", mrays, mrays / this.threads));
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.context.cleanup();
+    }
+}
\ No newline at end of file
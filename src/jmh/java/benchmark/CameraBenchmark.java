@@ -0,0 +1,76 @@
+package benchmark;
+
+import app.Camera;
+import app.Input;
+import app.Transform;
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.lwjgl.glfw.GLFW.*;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CameraBenchmark {
+
+    private renderer.entity.Camera renderCamera;
+
+    // Application camera driven by a detached input, moving forward and left
+    private Input input;
+    private Camera camera;
+    private Vector3f eye;
+    private Vector3f center;
+    private Vector3f up;
+
+    private Transform transform;
+
+    @Setup
+    public void setup() {
+        this.renderCamera = new renderer.entity.Camera();
+        this.renderCamera.setRatio(16.0f / 9.0f);
+
+        this.input = new Input();
+        this.input.setKeyboardState(GLFW_KEY_W, GLFW_PRESS);
+        this.input.setKeyboardState(GLFW_KEY_A, GLFW_PRESS);
+        this.camera = new Camera(this.input);
+        this.eye = new Vector3f();
+        this.center = new Vector3f();
+        this.up = new Vector3f();
+
+        this.transform = new Transform();
+        this.transform.setTranslation(new Vector3f(0, 0, 5));
+    }
+
+    @Benchmark
+    public renderer.entity.Camera cameraUpdate() {
+        // One tick of the update thread, then the state handed to the render camera
+        this.input.addMouseMotion(1.0f, 0.5f);
+        this.camera.update(16.0f);
+        this.camera.getState(this.eye, this.center, this.up);
+        this.renderCamera.setEye(this.eye.x, this.eye.y, this.eye.z);
+        this.renderCamera.setCenter(this.center.x, this.center.y, this.center.z);
+        this.renderCamera.setUp(this.up.x, this.up.y, this.up.z);
+        return this.renderCamera;
+    }
+
+    @Benchmark
+    public Matrix4f transformMatrix() {
+        // Moving marks the matrix for recomputation
+        this.transform.translate(new Vector3f(0.001f, 0, 0));
+        return this.transform.getMatrix();
+    }
+
+    @Benchmark
+    public boolean cameraFrame() {
+        this.renderCamera.startFrame();
+        boolean moved = this.renderCamera.hasMoved();
+        this.renderCamera.endFrame();
+        return moved;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,136 @@
+package benchmark;
+
+import org.joml.Vector3f;
+import org.joml.Vector4f;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.system.MemoryUtil;
+import org.openjdk.jmh.annotations.*;
+import renderer.asset.AssetManager;
+import renderer.asset.Material;
+import renderer.entity.SceneManager;
+import renderer.entity.Shape;
+import renderer.memory.StructArena;
+import shape.SphereShape;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+@State(Scope.Thread)
+public class SceneArenaBenchmark {
+
+    @Param({"100000"})
+    public int count;
+
+    // Heap object model the arena replaced, kept here as the baseline
+    private static class LegacyShape {
+        int index;
+        int type;
+        int material;
+        Vector3f position = new Vector3f();
+        Vector4f f0 = new Vector4f();
+        Vector4f f1 = new Vector4f();
+
+        void writeBuffer(ByteBuffer buffer) {
+            int bufferStart = this.index * Shape.BYTE_COUNT;
+            buffer.putInt(bufferStart + 0, this.type);
+            buffer.putInt(bufferStart + 4, this.material);
+            this.position.get(bufferStart + 16, buffer);
+            this.f0.get(bufferStart + 32, buffer);
+            this.f1.get(bufferStart + 48, buffer);
+        }
+    }
+
+    private List<LegacyShape> legacyShapes;
+    private ByteBuffer legacyBuffer;
+
+    private List<Shape> shapes;
+    private StructArena arena;
+
+    // Stands in for the storage buffer, an upload is a copy into it
+    private ByteBuffer uploadBuffer;
+    private int frame;
+
+    @Setup
+    public void setup() {
+        SphereShape.Type type = new SphereShape.Type();
+
+        long start = usedMemory();
+        this.legacyShapes = new ArrayList<>(this.count);
+        for (int i = 0; i < this.count; i++) {
+            LegacyShape shape = new LegacyShape();
+            shape.index = i;
+            shape.type = type.getID();
+            shape.position.set(i, i * 0.5f, -i);
+            shape.f0.set(0, 0, 0, 1.0f);
+            this.legacyShapes.add(shape);
+        }
+        this.legacyBuffer = BufferUtils.createByteBuffer(this.count * Shape.BYTE_COUNT);
+        long legacyHeap = usedMemory() - start;
+
+        // Headless managers, the arenas are owned by the managers
+        start = usedMemory();
+        SceneManager sceneManager = new SceneManager();
+        AssetManager assetManager = new AssetManager();
+        Material material = assetManager.createMaterial();
+        this.shapes = new ArrayList<>(this.count);
+        for (int i = 0; i < this.count; i++) {
+            Shape shape = sceneManager.createShape();
+            shape.setType(type);
+            shape.setMaterial(material);
+            shape.setPosition(i, i * 0.5f, -i);
+            shape.setF0(0, 0, 0, 1.0f);
+            this.shapes.add(shape);
+        }
+        this.arena = sceneManager.getShapeArena();
+        long arenaHeap = usedMemory() - start;
+
+        this.uploadBuffer = BufferUtils.createByteBuffer(this.arena.getCapacity() * Shape.BYTE_COUNT);
+
+        System.out.println();
+        System.out.println("Legacy : " + legacyHeap / 1024 + " KB heap, "
+                + this.legacyBuffer.capacity() / 1024 + " KB staging");
+        System.out.println("Arena  : " + arenaHeap / 1024 + " KB heap (flyweights and bookkeeping), "
+                + this.arena.getByteCount() / 1024 + " KB off-heap");
+    }
+
+    @Benchmark
+    public ByteBuffer updateLegacy() {
+        // Move every shape, each change is re-serialized before the upload
+        float offset = (this.frame++ & 1) * 0.01f;
+        for (LegacyShape shape : this.legacyShapes) {
+            shape.position.set(shape.index + offset, shape.index * 0.5f, -shape.index);
+            shape.writeBuffer(this.legacyBuffer);
+        }
+        MemoryUtil.memCopy(this.legacyBuffer, this.uploadBuffer);
+        return this.uploadBuffer;
+    }
+
+    @Benchmark
+    public ByteBuffer updateArena() {
+        // Move every shape, the fields are written in place and the dirty range is copied as is
+        float offset = (this.frame++ & 1) * 0.01f;
+        for (int i = 0; i < this.shapes.size(); i++) {
+            this.shapes.get(i).setPosition(i + offset, i * 0.5f, -i);
+        }
+        int end = this.arena.getDirtySlots().length();
+        MemoryUtil.memCopy(MemoryUtil.memAddress(this.arena.getBuffer()), MemoryUtil.memAddress(this.uploadBuffer),
+                (long)end * Shape.BYTE_COUNT);
+        this.arena.getDirtySlots().clear();
+        return this.uploadBuffer;
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,108 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import renderer.asset.AssetManager;
+import renderer.asset.Material;
+import renderer.entity.BVH;
+import renderer.entity.SceneManager;
+import renderer.entity.Shape;
+import shape.SphereShape;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SceneChurnBenchmark {
+
+    @Param({"2000"})
+    public int liveShapeCount;
+
+    @Param({"10000"})
+    public int churnPerSecond;
+
+    private final static int FRAMES_PER_SECOND = 60;
+
+    private SceneManager sceneManager;
+    private SphereShape.Type type;
+    private Material material;
+    private List<Shape> shapes;
+    private Random random;
+    private int churnPerFrame;
+
+    // Bytes the frames would have uploaded, the headless scene keeps no storage buffers
+    private long uploadedBytes;
+    private long frameCount;
+
+    @Setup
+    public void setup() {
+        this.sceneManager = new SceneManager();
+        this.type = new SphereShape.Type();
+        this.material = new AssetManager().createMaterial();
+        this.random = new Random(0);
+        this.churnPerFrame = this.churnPerSecond / FRAMES_PER_SECOND;
+
+        // Steady population, every frame despawns and spawns the same number of shapes
+        this.shapes = new ArrayList<>(this.liveShapeCount);
+        while (this.shapes.size() < this.liveShapeCount) {
+            this.shapes.add(spawn());
+        }
+        this.sceneManager.updateAccelerationStructure();
+        clearDirty();
+        this.uploadedBytes = 0;
+        this.frameCount = 0;
+    }
+
+    @Benchmark
+    public BVH churnFrame() {
+        for (int i = 0; i < this.churnPerFrame; i++) {
+            int index = this.random.nextInt(this.shapes.size());
+            this.sceneManager.removeShape(this.shapes.get(index));
+            this.shapes.set(index, this.shapes.get(this.shapes.size() - 1));
+            this.shapes.remove(this.shapes.size() - 1);
+        }
+        for (int i = 0; i < this.churnPerFrame; i++) {
+            this.shapes.add(spawn());
+        }
+        this.sceneManager.updateAccelerationStructure();
+
+        this.uploadedBytes += (long)this.sceneManager.getShapeArena().getDirtySlots().cardinality() * Shape.BYTE_COUNT
+                + (long)this.sceneManager.getBVH().getDirtyNodes().cardinality() * BVH.BYTE_COUNT;
+        this.frameCount++;
+        clearDirty();
+        return this.sceneManager.getBVH();
+    }
+
+    @TearDown
+    public void tearDown() {
+        // Slots stay dense, the GPU never loops over removed shapes
+        if (this.sceneManager.getShapeCount() != this.shapes.size()) {
+            throw new IllegalStateException("shape count " + this.sceneManager.getShapeCount() + " != " + this.shapes.size());
+        }
+
+        System.out.println();
+        System.out.println(String.format("Upload : %.1f KB/frame", this.uploadedBytes / 1024.0 / Math.max(this.frameCount, 1)));
+    }
+
+    private Shape spawn() {
+        // Spheres in a 100 units cube
+        Shape shape = this.sceneManager.createShape();
+        shape.setType(this.type);
+        shape.setMaterial(this.material);
+        shape.setF0(0, 0, 0, 0.2f);
+        shape.setPosition(this.random.nextFloat() * 100 - 50, this.random.nextFloat() * 100 - 50,
+                this.random.nextFloat() * 100 - 50);
+        return shape;
+    }
+
+    private void clearDirty() {
+        this.sceneManager.getShapeArena().getDirtySlots().clear();
+        this.sceneManager.getBVH().getDirtyNodes().clear();
+    }
+}
\ No newline at end of file
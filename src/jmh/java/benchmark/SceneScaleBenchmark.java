@@ -0,0 +1,90 @@
+package benchmark;
+
+import org.lwjgl.glfw.GLFWErrorCallback;
+import renderer.RenderContext;
+import renderer.RenderMaterial;
+import shape.*;
+
+import java.util.Random;
+
+import static org.lwjgl.glfw.GLFW.*;
+import static org.lwjgl.opengl.GL45.*;
+import static org.lwjgl.system.MemoryUtil.NULL;
+
+// Needs a GL 4.5 context, run as a main rather than through JMH
+public class SceneScaleBenchmark {
+
+    private final static int[] SHAPE_COUNTS = {128, 1024, 10000, 100000};
+    private final static int FRAME_COUNT = 3;
+
+    public static void main(String[] args) {
+        GLFWErrorCallback.createPrint(System.err).set();
+        if (!glfwInit())
+            throw new IllegalStateException("Unable to initialize GLFW");
+
+        glfwDefaultWindowHints();
+        glfwWindowHint(GLFW_VISIBLE, GLFW_FALSE);
+        glfwWindowHint(GLFW_CONTEXT_VERSION_MAJOR, 4);
+        glfwWindowHint(GLFW_CONTEXT_VERSION_MINOR, 5);
+        glfwWindowHint(GLFW_OPENGL_PROFILE, GLFW_OPENGL_CORE_PROFILE);
+        long window = glfwCreateWindow(640, 360, "SceneScaleBenchmark", NULL, NULL);
+        if (window == NULL)
+            throw new RuntimeException("Failed to create the GLFW window");
+        glfwMakeContextCurrent(window);
+        glfwSwapInterval(0);
+
+        RenderContext context = new RenderContext(640, 360);
+        SphereShape.register(context);
+        RenderMaterial material = context.createMaterial();
+        material.setAlbedo(1.0f, 1.0f, 1.0f);
+        context.getActiveCamera().setEye(0, 0, 80);
+        context.getActiveCamera().setCenter(0, 0, 79);
+
+        // Every frame marches from the camera, a static camera would otherwise reuse the previous depth
+        context.setTemporalSeed(false);
+        context.setDepthPrepass(false);
+
+        // Shaders are compiled on the first frame, keep it out of the measured ones
+        context.render();
+        glFinish();
+
+        System.out.println("shapes  create ms  upload KB  upload frame ms  march frame ms");
+
+        Random random = new Random(0);
+        int shapeCount = 0;
+        for (int targetCount : SHAPE_COUNTS) {
+            // Spawn spheres in a 100 units cube
+            long start = System.nanoTime();
+            while (shapeCount < targetCount) {
+                SphereShape sphere = new SphereShape(context, 0.2f);
+                sphere.setMaterial(material);
+                sphere.setPosition(random.nextFloat() * 100 - 50, random.nextFloat() * 100 - 50, random.nextFloat() * 100 - 50);
+                shapeCount++;
+            }
+            double createMs = (double)(System.nanoTime() - start) / 1e6;
+
+            // First frame pays the upload (and the storage reallocation)
+            start = System.nanoTime();
+            context.render();
+            glFinish();
+            double uploadFrameMs = (double)(System.nanoTime() - start) / 1e6;
+            int uploadedBytes = context.getUploadedBytes();
+
+            // Following frames only march
+            start = System.nanoTime();
+            for (int i = 0; i < FRAME_COUNT; i++) {
+                context.render();
+            }
+            glFinish();
+            double marchFrameMs = (double)(System.nanoTime() - start) / 1e6 / FRAME_COUNT;
+
+            System.out.println(String.format("%6d  %9.2f  %9.1f  %15.2f  %14.2f",
+                    shapeCount, createMs, uploadedBytes / 1024.0, uploadFrameMs, marchFrameMs));
+        }
+
+        context.cleanup();
+        glfwDestroyWindow(window);
+        glfwTerminate();
+        glfwSetErrorCallback(null).free();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,46 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import renderer.shader.ShaderGenerator;
+import shape.*;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ShaderGeneratorBenchmark {
+
+    @Param({
+            "gbuffer_pass.vert", "gbuffer_pass.frag",
+            "indirect_light_pass.vert", "indirect_light_pass.frag",
+            "light_pass.vert", "light_pass.frag",
+            "postprocess_pass.vert", "postprocess_pass.frag",
+            "depth_prepass.frag"
+    })
+    public String file;
+
+    private ShaderGenerator generator;
+
+    @Setup
+    public void setup() {
+        this.generator = new ShaderGenerator();
+        this.generator.registerShapeType(new SphereShape.Type());
+        this.generator.registerShapeType(new RoundBoxShape.Type());
+        this.generator.registerShapeType(new BoxFrameShape.Type());
+        this.generator.registerShapeType(new TorusShape.Type());
+        this.generator.registerShapeType(new PlaneShape.Type());
+        this.generator.registerShapeType(new MengerSpongeShape.Type());
+
+        // Raw sources are cached, only token and include processing is measured
+        this.generator.getCode(this.file);
+    }
+
+    @Benchmark
+    public String getCode() {
+        return this.generator.getCode(this.file);
+    }
+}
\ No newline at end of file
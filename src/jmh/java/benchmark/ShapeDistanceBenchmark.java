@@ -0,0 +1,80 @@
+package benchmark;
+
+import org.joml.Vector3f;
+import org.openjdk.jmh.annotations.*;
+import renderer.RenderShapeParameters;
+import renderer.RenderShapeType;
+import shape.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ShapeDistanceBenchmark {
+    private final static int POINT_COUNT = 1024;
+
+    @Param({"sphere", "torus", "plane", "roundbox", "boxframe", "menger"})
+    public String shape;
+
+    private RenderShapeType type;
+    private RenderShapeParameters parameters;
+    private Vector3f[] points;
+    private int next;
+
+    @Setup
+    public void setup() {
+        // Same parameters as the shapes of the demo scene
+        this.parameters = new RenderShapeParameters();
+        switch (this.shape) {
+            case "sphere":
+                this.type = new SphereShape.Type();
+                this.parameters.f0.set(0, 0, 0, 1.0f);
+                break;
+            case "torus":
+                this.type = new TorusShape.Type();
+                this.parameters.f1.set(2.0f, 0.5f, 0, 0);
+                break;
+            case "plane":
+                this.type = new PlaneShape.Type();
+                this.parameters.f0.set(0, 0, 0, -7.0f);
+                this.parameters.f1.set(0, 1, 0, 0);
+                break;
+            case "roundbox":
+                this.type = new RoundBoxShape.Type();
+                this.parameters.f0.set(0, 0, 0, 0.1f);
+                this.parameters.f1.set(10, 30, 1, 0);
+                break;
+            case "boxframe":
+                this.type = new BoxFrameShape.Type();
+                this.parameters.f0.set(0, 0, 0, 0.1f);
+                this.parameters.f1.set(2, 2, 2, 0);
+                break;
+            case "menger":
+                this.type = new MengerSpongeShape.Type();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown shape " + this.shape);
+        }
+
+        // Fixed seed so every run samples the same points
+        Random random = new Random(42);
+        this.points = new Vector3f[POINT_COUNT];
+        for (int i = 0; i < POINT_COUNT; i++) {
+            this.points[i] = new Vector3f(random.nextFloat() * 40.0f - 20.0f,
+                    random.nextFloat() * 40.0f - 20.0f,
+                    random.nextFloat() * 40.0f - 20.0f);
+        }
+    }
+
+    @Benchmark
+    public float getDistance() {
+        Vector3f p = this.points[this.next];
+        this.next = (this.next + 1) & (POINT_COUNT - 1);
+        return this.type.getDistance(p, this.parameters);
+    }
+}
\ No newline at end of file
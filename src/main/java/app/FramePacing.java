@@ -0,0 +1,59 @@
+package app;
+
+import renderer.profiler.PassStatistics;
+
+public class FramePacing {
+    private final static int WINDOW_SIZE = 240;
+
+    // Written by the update and the render threads, read for the report
+    private PassStatistics updateInterval;
+    private PassStatistics updateWork;
+    private PassStatistics frameInterval;
+    private PassStatistics frameWork;
+    private long lastUpdate;
+    private long lastFrame;
+    private int droppedTicks;
+
+    public FramePacing() {
+        this.updateInterval = new PassStatistics("UPDATE INTERVAL", WINDOW_SIZE);
+        this.updateWork = new PassStatistics("UPDATE", WINDOW_SIZE);
+        this.frameInterval = new PassStatistics("FRAME INTERVAL", WINDOW_SIZE);
+        this.frameWork = new PassStatistics("RENDER", WINDOW_SIZE);
+    }
+
+    public synchronized void addUpdate(long start, long end) {
+        if (this.lastUpdate != 0) this.updateInterval.addSample((float)(start - this.lastUpdate) / 1000000.0f);
+        this.updateWork.addSample((float)(end - start) / 1000000.0f);
+        this.lastUpdate = start;
+    }
+
+    public synchronized void addFrame(long start, long end) {
+        if (this.lastFrame != 0) this.frameInterval.addSample((float)(start - this.lastFrame) / 1000000.0f);
+        this.frameWork.addSample((float)(end - start) / 1000000.0f);
+        this.lastFrame = start;
+    }
+
+    public synchronized void addDroppedTicks(int count) {
+        // Ticks skipped when the update thread fell too far behind
+        this.droppedTicks += count;
+    }
+
+    public synchronized String report() {
+        String report = String.format("%-20s %8s %8s %8s %8s %8s%n", "pacing (ms)", "avg", "p50", "p95", "p99", "rate");
+        report += format(this.updateInterval, true);
+        report += format(this.updateWork, false);
+        report += format(this.frameInterval, true);
+        report += format(this.frameWork, false);
+        report += String.format("%-20s %8d%n", "DROPPED TICKS", this.droppedTicks);
+        return report;
+    }
+
+    private String format(PassStatistics statistics, boolean rate) {
+        String line = String.format("%-20s %8.3f %8.3f %8.3f %8.3f", statistics.getName(), statistics.getAverage(),
+                statistics.getPercentile(50), statistics.getPercentile(95), statistics.getPercentile(99));
+        if (rate && statistics.getAverage() > 0.0f) {
+            line += String.format(" %6.1fHz", 1000.0f / statistics.getAverage());
+        }
+        return line + String.format("%n");
+    }
+}
\ No newline at end of file
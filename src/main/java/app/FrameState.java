@@ -0,0 +1,54 @@
+package app;
+
+import org.joml.Vector3f;
+import renderer.RenderCamera;
+
+public class FrameState {
+
+    // Tick that produced the state, in System.nanoTime() time
+    private long tickTime;
+    private long tickIndex;
+
+    // Camera at the previous and at this tick, the render thread blends them
+    private Vector3f previousEye = new Vector3f();
+    private Vector3f previousCenter = new Vector3f();
+    private Vector3f previousUp = new Vector3f();
+    private Vector3f eye = new Vector3f();
+    private Vector3f center = new Vector3f();
+    private Vector3f up = new Vector3f();
+
+    // Render thread scratch
+    private Vector3f blended = new Vector3f();
+
+    public FrameState(Camera camera) {
+        // Both ticks start from the initial camera state
+        camera.getState(this.eye, this.center, this.up);
+        camera.getState(this.previousEye, this.previousCenter, this.previousUp);
+    }
+
+    public long getTickTime() {
+        return this.tickTime;
+    }
+
+    public long getTickIndex() {
+        return this.tickIndex;
+    }
+
+    public void set(FrameState previous, Camera camera, long tickTime, long tickIndex) {
+        this.tickTime = tickTime;
+        this.tickIndex = tickIndex;
+        this.previousEye.set(previous.eye);
+        this.previousCenter.set(previous.center);
+        this.previousUp.set(previous.up);
+        camera.getState(this.eye, this.center, this.up);
+    }
+
+    public void apply(RenderCamera camera, float alpha) {
+        this.previousEye.lerp(this.eye, alpha, this.blended);
+        camera.setEye(this.blended.x, this.blended.y, this.blended.z);
+        this.previousCenter.lerp(this.center, alpha, this.blended);
+        camera.setCenter(this.blended.x, this.blended.y, this.blended.z);
+        this.previousUp.lerp(this.up, alpha, this.blended).normalize();
+        camera.setUp(this.blended.x, this.blended.y, this.blended.z);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,66 @@
+package app;
+
+import org.joml.Vector2f;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.lwjgl.glfw.GLFW.*;
+
+public class Input {
+    long window;
+    Vector2f mousePosition = new Vector2f();
+    Vector2f mouseOldPosition = new Vector2f();
+
+    // Sampled by the main thread, GLFW cannot be queried from the update thread
+    private AtomicIntegerArray keyStates = new AtomicIntegerArray(GLFW_KEY_LAST + 1);
+    // Accumulated until the update thread takes it
+    private Vector2f mouseMotion = new Vector2f();
+
+    public Input() {
+        // Detached from any window, states are only changed through the setters
+        this.window = 0;
+    }
+
+    public Input(long window) {
+        this.window = window;
+        glfwSetCursorPosCallback(this.window, (w, x, y) -> {
+            this.mousePosition.x = (float)x;
+            this.mousePosition.y = (float)y;
+        });
+    }
+
+    public void update() {
+        // Main thread, after the events were polled
+        if (this.window == 0) return;
+        for (int key = GLFW_KEY_SPACE; key <= GLFW_KEY_LAST; key++) {
+            this.keyStates.set(key, glfwGetKey(this.window, key));
+        }
+        synchronized (this.mouseMotion) {
+            this.mouseMotion.add(this.mousePosition).sub(this.mouseOldPosition);
+        }
+        this.mouseOldPosition.set(this.mousePosition);
+    }
+
+    public Vector2f takeMouseMotion(Vector2f dest) {
+        // Motion since the last call, any number of frames may have been rendered in between
+        synchronized (this.mouseMotion) {
+            dest.set(this.mouseMotion);
+            this.mouseMotion.zero();
+        }
+        return dest;
+    }
+
+    public int getKeyboardState(int key) {
+        return this.keyStates.get(key);
+    }
+
+    public void setKeyboardState(int key, int state) {
+        this.keyStates.set(key, state);
+    }
+
+    public void addMouseMotion(float x, float y) {
+        synchronized (this.mouseMotion) {
+            this.mouseMotion.add(x, y);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,45 @@
+package app;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+public class TripleBuffer<T> {
+
+    // Slot index in the low bits, set while the middle slot holds an unread state
+    private final static int FRESH = 4;
+    private final static int INDEX_MASK = 3;
+
+    private Object[] slots;
+    private AtomicInteger middle;
+    // Producer only
+    private int back;
+    // Consumer only
+    private int front;
+
+    public TripleBuffer(Supplier<T> factory) {
+        this.slots = new Object[] { factory.get(), factory.get(), factory.get() };
+        this.front = 0;
+        this.middle = new AtomicInteger(1);
+        this.back = 2;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T getBack() {
+        // Stale content, the producer writes it in full before publishing
+        return (T)this.slots[this.back];
+    }
+
+    public void publish() {
+        // Swap the back slot with the middle one, the reader picks it up on its next read
+        this.back = this.middle.getAndSet(this.back | FRESH) & INDEX_MASK;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T read() {
+        // Latest published slot, the previous one is read again when nothing new was published
+        if ((this.middle.get() & FRESH) != 0) {
+            this.front = this.middle.getAndSet(this.front) & INDEX_MASK;
+        }
+        return (T)this.slots[this.front];
+    }
+}
\ No newline at end of file
@@ -0,0 +1,92 @@
+package renderer;
+
+public class DynamicResolution {
+
+    // Preset fractions of the window resolution
+    private final static float[] SCALES = {0.5f, 0.625f, 0.75f, 0.875f, 1.0f};
+    private final static float UPSCALE_MARGIN = 0.8f;
+    private final static int SAMPLE_COUNT = 16;
+    private final static int COOLDOWN_FRAMES = 8;
+
+    private float targetFrameTime;
+    private int level;
+    private float frameTimeSum;
+    private int frameTimeCount;
+    private int cooldown;
+
+    public DynamicResolution(float targetFrameTime) {
+        this.targetFrameTime = targetFrameTime;
+        this.level = SCALES.length - 1;
+    }
+
+    public static int getLevelCount() {
+        return SCALES.length;
+    }
+
+    public static float getScale(int level) {
+        return SCALES[level];
+    }
+
+    public int getMaxLevel() {
+        return SCALES.length - 1;
+    }
+
+    public int getLevel() {
+        return this.level;
+    }
+
+    public void setTargetFrameTime(float targetFrameTime) {
+        this.targetFrameTime = targetFrameTime;
+        reset();
+    }
+
+    public float getTargetFrameTime() {
+        return this.targetFrameTime;
+    }
+
+    public void reset() {
+        this.frameTimeSum = 0.0f;
+        this.frameTimeCount = 0;
+        this.cooldown = COOLDOWN_FRAMES;
+    }
+
+    public boolean addFrameTime(float frameTime) {
+        // Ignore frames still in flight when the level changed
+        if (this.cooldown > 0) {
+            this.cooldown--;
+            return false;
+        }
+
+        this.frameTimeSum += frameTime;
+        this.frameTimeCount++;
+        if (this.frameTimeCount < SAMPLE_COUNT) return false;
+
+        float average = this.frameTimeSum / (float)this.frameTimeCount;
+        this.frameTimeSum = 0.0f;
+        this.frameTimeCount = 0;
+
+        // Frame cost is assumed proportional to the pixel count
+        float scale = SCALES[this.level];
+        int newLevel = this.level;
+        if (average > this.targetFrameTime) {
+            // Drop straight to the largest level expected to fit the budget
+            while (newLevel > 0 && predict(average, scale, newLevel) > this.targetFrameTime) {
+                newLevel--;
+            }
+        } else if (this.level < SCALES.length - 1
+                && predict(average, scale, this.level + 1) < this.targetFrameTime * UPSCALE_MARGIN) {
+            // Only step up one level with some headroom to avoid oscillating
+            newLevel = this.level + 1;
+        }
+
+        if (newLevel == this.level) return false;
+        this.level = newLevel;
+        this.cooldown = COOLDOWN_FRAMES;
+        return true;
+    }
+
+    private float predict(float frameTime, float scale, int level) {
+        float ratio = SCALES[level] / scale;
+        return frameTime * ratio * ratio;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,18 @@
+package renderer;
+
+public enum IndirectLightQuality {
+    FULL(1),
+    HALF(2),
+    QUARTER(4);
+
+    // Indirect light buffer size divisor
+    private final int scale;
+
+    IndirectLightQuality(int scale) {
+        this.scale = scale;
+    }
+
+    public int getScale() {
+        return this.scale;
+    }
+}
\ No newline at end of file
@@ -1,8 +1,8 @@
-package renderer;
-
-public interface RenderCamera {
-    void setEye(float x, float y, float z);
-    void setCenter(float x, float y, float z);
-    void setUp(float x, float y, float z);
-    void setRatio(float ration);
+package renderer;
+
+public interface RenderCamera {
+    void setEye(float x, float y, float z);
+    void setCenter(float x, float y, float z);
+    void setUp(float x, float y, float z);
+    void setRatio(float ration);
 }
\ No newline at end of file
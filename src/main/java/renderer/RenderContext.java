@@ -1,246 +1,752 @@
-package renderer;
-
-import renderer.asset.AssetManager;
-import renderer.entity.SceneManager;
-import org.lwjgl.opengl.GL;
-import renderer.memory.ColorBuffer;
-import renderer.memory.GBuffer;
-import renderer.memory.MemoryManager;
-import renderer.shader.ComputeShader;
-import renderer.shader.RenderShader;
-import renderer.shader.Shader;
-import renderer.shader.ShaderGenerator;
-
-import static org.lwjgl.opengl.GL45.*;
-
-public class RenderContext {
-
-    private final static int FRAME_COUNT = 2;
-
-    private int width;
-    private int height;
-
-    // Managers
-    private MemoryManager memoryManager;
-    private ShaderGenerator shaderGenerator;
-    private SceneManager sceneManager;
-    private AssetManager assetManager;
-
-    // Shaders
-    private Shader gBufferShader;
-    private Shader indirectLightShader;
-    private Shader lightShader;
-    private Shader postProcessShader;
-    private ComputeShader computeShader;
-
-    // Framebuffers
-    private GBuffer[] gBuffers;
-    private ColorBuffer[] indirectLightBuffers;
-    private ColorBuffer colorBuffer;
-    private int currentFrame;
-    private int frameIndex;
-
-    // VAO
-    private int emptyVAO;
-
-    public RenderContext(int width, int height) {
-        GL.createCapabilities();
-
-        this.width = width;
-        this.height = height;
-
-        this.gBuffers = new GBuffer[FRAME_COUNT];
-        this.indirectLightBuffers = new ColorBuffer[FRAME_COUNT];
-
-        this.currentFrame = 0;
-        this.frameIndex = 0;
-
-        try {
-            // Generate quad resources
-            updateResolution(this.width, this.height);
-            createEmptyVAO();
-
-            // Create main systems
-            this.memoryManager = new MemoryManager();
-            this.shaderGenerator = new ShaderGenerator();
-            this.assetManager = new AssetManager(this.memoryManager);
-            this.sceneManager = new SceneManager(this.memoryManager);
-
-            // Create shaders
-            createShaders();
-
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-    }
-
-    public void registerShapeType(RenderShapeType type) {
-        this.shaderGenerator.registerShapeType(type);
-        try {
-            deleteShaders();
-            createShaders();
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-    }
-
-    public RenderMaterial createMaterial() {
-        return this.assetManager.createMaterial();
-    }
-
-    public RenderShape createShape() {
-        return this.sceneManager.createShape();
-    }
-
-    public RenderCamera getActiveCamera() {
-        return this.sceneManager.getActiveCamera();
-    }
-
-    public void cleanup() {
-        for (int i = 0; i < FRAME_COUNT; i++) {
-            this.gBuffers[i].cleanup();
-            this.indirectLightBuffers[i].cleanup();
-        }
-        this.colorBuffer.cleanup();
-        deleteEmptyVAO();
-        deleteShaders();
-    }
-
-    public void updateResolution(int width, int height) {
-        this.width = width;
-        this.height = height;
-
-        System.out.println("request new resolution " + this.width + " " + this.height);
-
-        for (int i = 0; i < FRAME_COUNT; i++) {
-            if (this.gBuffers[i] != null) {
-                this.gBuffers[i].cleanup();
-                this.gBuffers[i] = null;
-            }
-            if (this.indirectLightBuffers[i] != null) {
-                this.indirectLightBuffers[i].cleanup();
-                this.indirectLightBuffers[i] = null;
-            }
-        }
-        if (this.colorBuffer != null) {
-            this.colorBuffer.cleanup();
-            this.colorBuffer = null;
-        }
-
-//        int bufferWidth = this.width; int bufferHeight = this.height;
-//        int bufferWidth = 1024; int bufferHeight = 576;
-//        int bufferWidth = 1280; int bufferHeight = 720;
-        int bufferWidth = 1920; int bufferHeight = 1080;
-//        int bufferWidth = 1600; int bufferHeight = 800;
-//        int bufferWidth = 3840; int bufferHeight = 2160;
-//        int bufferWidth = 7680; int bufferHeight = 4320;
-
-        System.out.println("choosen resolution " + bufferWidth + " " + bufferHeight);
-
-        for (int i = 0; i < FRAME_COUNT; i++) {
-            this.gBuffers[i] = new GBuffer(bufferWidth, bufferHeight);
-            this.indirectLightBuffers[i] = new ColorBuffer(bufferWidth, bufferHeight);
-        }
-        this.colorBuffer = new ColorBuffer(bufferWidth, bufferHeight);
-    }
-
-    public void update(float deltaTime) {
-
-    }
-
-    public void render() {
-
-        assert (glGetError() == 0);
-
-        // Compute previous frame indice
-        int previousFrame = Math.floorMod(this.currentFrame - 1, FRAME_COUNT);
-
-        // Update camera
-        this.sceneManager.getActiveCamera().setRatio((float)this.width / (float)this.height);
-        this.sceneManager.getActiveCamera().startFrame();
-        if (this.sceneManager.getActiveCamera().hasMoved()) {
-            this.frameIndex = 0;
-        }
-
-        /*------------------*/
-        /*   GBUFFER PASS   */
-        /*------------------*/
-
-        this.gBufferShader.bind();
-        this.gBuffers[this.currentFrame].setViewport();
-        this.gBuffers[this.currentFrame].bindFramebuffer();
-        this.sceneManager.getActiveCamera().pushGBufferPassUniforms();
-        glClear(GL_COLOR_BUFFER_BIT);
-        drawEmptyVAO();
-
-        /*-------------------------*/
-        /*   INDIRECT LIGHT PASS   */
-        /*-------------------------*/
-
-        this.indirectLightShader.bind();
-        this.indirectLightBuffers[this.currentFrame].setViewport();
-        this.indirectLightBuffers[this.currentFrame].bindFramebuffer();
-        this.sceneManager.getActiveCamera().pushIndirectLightPassUniforms();
-        this.gBuffers[this.currentFrame].bindAllSamplers(0);
-        this.gBuffers[previousFrame].bindAllSamplers(2);
-        this.indirectLightBuffers[previousFrame].bindSampler(4);
-        glUniform1i(6, this.frameIndex);
-        drawEmptyVAO();
-
-        /*----------------*/
-        /*   LIGHT PASS   */
-        /*----------------*/
-
-        this.lightShader.bind();
-        this.colorBuffer.setViewport();
-        this.colorBuffer.bindFramebuffer();
-        this.gBuffers[this.currentFrame].bindAllSamplers(0);
-        this.indirectLightBuffers[this.currentFrame].bindSampler(2);
-        drawEmptyVAO();
-
-        /*-----------------------*/
-        /*   POST-PROCESS PASS   */
-        /*-----------------------*/
-
-        this.postProcessShader.bind();
-        glViewport(0, 0, this.width, this.height);
-        glBindFramebuffer(GL_FRAMEBUFFER, 0);
-        this.colorBuffer.bindSampler(0);
-        drawEmptyVAO();
-
-        // Next frame
-        this.sceneManager.getActiveCamera().endFrame();
-        this.currentFrame = (this.currentFrame + 1) % FRAME_COUNT;
-        this.frameIndex++;
-    }
-
-    private void createShaders() throws Exception {
-        this.gBufferShader = new RenderShader(this.shaderGenerator.getCode("gbuffer_pass.vert"),
-                this.shaderGenerator.getCode("gbuffer_pass.frag"));
-        this.indirectLightShader = new RenderShader(this.shaderGenerator.getCode("indirect_light_pass.vert"),
-                this.shaderGenerator.getCode("indirect_light_pass.frag"));
-        this.lightShader = new RenderShader(this.shaderGenerator.getCode("light_pass.vert"),
-                this.shaderGenerator.getCode("light_pass.frag"));
-        this.postProcessShader = new RenderShader(this.shaderGenerator.getCode("postprocess_pass.vert"),
-                this.shaderGenerator.getCode("postprocess_pass.frag"));
-    }
-    private void deleteShaders() {
-        this.gBufferShader.cleanup();
-        this.indirectLightShader.cleanup();
-        this.lightShader.cleanup();
-        this.postProcessShader.cleanup();
-    }
-
-    private void createEmptyVAO() {
-        this.emptyVAO = glGenVertexArrays();
-    }
-    private void deleteEmptyVAO() {
-        glDeleteVertexArrays(this.emptyVAO);
-    }
-
-    private void drawEmptyVAO() {
-        glBindVertexArray(this.emptyVAO);
-        glDrawArrays(GL_TRIANGLES, 0, 3);
-        glBindVertexArray(0);
-    }
+package renderer;
+
+import renderer.asset.AssetManager;
+import renderer.asset.Material;
+import renderer.entity.SceneManager;
+import renderer.entity.Shape;
+import org.lwjgl.opengl.GL;
+import renderer.capture.CaptureFormat;
+import renderer.command.SceneCommandQueue;
+import renderer.command.SceneCommandTarget;
+import renderer.capture.FrameCapture;
+import renderer.cpu.DistanceField;
+import renderer.cpu.DistanceFieldBaker;
+import renderer.cpu.DistanceFieldClipmap;
+import renderer.memory.ClipmapTexture;
+import renderer.memory.ColorBuffer;
+import renderer.memory.DistanceFieldTexture;
+import renderer.memory.GBuffer;
+import renderer.memory.MemoryManager;
+import renderer.profiler.GPUProfiler;
+import renderer.profiler.PassStatistics;
+import renderer.profiler.StepCounter;
+import renderer.shader.ComputeShader;
+import renderer.shader.ProgramCache;
+import renderer.shader.RenderShader;
+import renderer.shader.Shader;
+import renderer.shader.ShaderGenerator;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.lwjgl.opengl.GL45.*;
+
+public class RenderContext implements SceneCommandTarget {
+
+    private final static int FRAME_COUNT = 2;
+    private final static long PROGRAM_CACHE_MAX_BYTES = 64L * 1024L * 1024L;
+    private final static long DISTANCE_FIELD_CACHE_MAX_BYTES = 1024L * 1024L * 1024L;
+
+    // Profiled passes
+    public final static int DEPTH_PREPASS = 0;
+    public final static int GBUFFER_PASS = 1;
+    public final static int INDIRECT_LIGHT_PASS = 2;
+    public final static int LIGHT_PASS = 3;
+    public final static int POST_PROCESS_PASS = 4;
+    private final static String[] PASS_NAMES = {"DEPTH PREPASS", "GBUFFER", "INDIRECT LIGHT", "LIGHT", "POST-PROCESS"};
+    private final static int PROFILER_LATENCY = 4;
+    private final static float DEFAULT_TARGET_FRAME_TIME = 1000.0f / 60.0f;
+
+    // Indirect light keeps its sample count in alpha
+    private final static int INDIRECT_LIGHT_FORMAT = GL_RGBA16F;
+    private final static int COLOR_FORMAT = GL_R11F_G11F_B10F;
+
+    // Depth prepass texel size in pixels
+    private final static int PREPASS_SCALE = 8;
+    private final static int PREPASS_FORMAT = GL_R32F;
+
+    // Camera centered distance field, the finest level spans CLIPMAP_RESOLUTION * CLIPMAP_VOXEL_SIZE
+    private final static int CLIPMAP_RESOLUTION = 64;
+    private final static float CLIPMAP_VOXEL_SIZE = 0.5f;
+    private final static long CLIPMAP_CACHE_MAX_BYTES = 32L * 1024L * 1024L;
+
+    // Frames in flight between the GPU readback and the disk
+    private final static int CAPTURE_SLOT_COUNT = 4;
+    private final static int CAPTURE_FORMAT = GL_RGBA8;
+
+    private int width;
+    private int height;
+    private int bufferWidth;
+    private int bufferHeight;
+
+    // Managers
+    private MemoryManager memoryManager;
+    private ShaderGenerator shaderGenerator;
+    private ProgramCache programCache;
+    private SceneManager sceneManager;
+    private AssetManager assetManager;
+    private SceneCommandQueue commandQueue;
+    private GPUProfiler profiler;
+    private int profilerReportInterval;
+    private StepCounter stepCounter;
+    private boolean stepStatisticsEnabled;
+    private FrameCapture frameCapture;
+
+    // Shaders
+    private Shader depthPrepassShader;
+    private Shader gBufferShader;
+    private Shader indirectLightShader;
+    private Shader lightShader;
+    private Shader postProcessShader;
+    private ComputeShader computeShader;
+    private int pendingShapeTypeCount;
+    private boolean shadersDirty;
+    private int compileCount;
+    private int compiledSceneVersion;
+
+    // Static scene distance field, used by secondary rays
+    private DistanceFieldTexture distanceFieldTexture;
+    private DistanceField distanceField;
+    private int bakedGeometryVersion;
+    private DistanceFieldClipmap clipmap;
+    private ClipmapTexture clipmapTexture;
+    private float[] clipmapLevels;
+
+    // Framebuffers, one set per dynamic resolution level
+    private GBuffer[][] gBufferPool;
+    private ColorBuffer[][] indirectLightBufferPool;
+    private ColorBuffer[] colorBufferPool;
+    private ColorBuffer[] prepassBufferPool;
+    private DynamicResolution dynamicResolution;
+    private boolean dynamicResolutionEnabled;
+    private int resolutionLevel;
+    private IndirectLightQuality indirectLightQuality;
+    private GBuffer[] gBuffers;
+    private ColorBuffer[] indirectLightBuffers;
+    private ColorBuffer colorBuffer;
+    private ColorBuffer prepassBuffer;
+    private ColorBuffer captureBuffer;
+    private boolean depthPrepassEnabled;
+    private boolean temporalSeedEnabled;
+    private int seededSceneVersion;
+    private int currentFrame;
+    private int frameIndex;
+
+    // VAO
+    private int emptyVAO;
+
+    public RenderContext(int width, int height) {
+        GL.createCapabilities();
+
+        this.width = width;
+        this.height = height;
+
+        int levelCount = DynamicResolution.getLevelCount();
+        this.gBufferPool = new GBuffer[levelCount][];
+        this.indirectLightBufferPool = new ColorBuffer[levelCount][];
+        this.colorBufferPool = new ColorBuffer[levelCount];
+        this.prepassBufferPool = new ColorBuffer[levelCount];
+        this.depthPrepassEnabled = true;
+        this.temporalSeedEnabled = true;
+        this.clipmapLevels = new float[DistanceFieldClipmap.LEVEL_COUNT * 4];
+        this.dynamicResolution = new DynamicResolution(DEFAULT_TARGET_FRAME_TIME);
+        this.indirectLightQuality = IndirectLightQuality.FULL;
+
+        this.currentFrame = 0;
+        this.frameIndex = 0;
+
+        try {
+            // Generate quad resources
+            updateResolution(this.width, this.height);
+            createEmptyVAO();
+
+            // Create main systems
+            this.memoryManager = new MemoryManager();
+            this.shaderGenerator = new ShaderGenerator();
+            this.programCache = new ProgramCache(Path.of(System.getProperty("user.home"), ".raymarcher", "program_cache"),
+                    PROGRAM_CACHE_MAX_BYTES);
+            this.assetManager = new AssetManager(this.memoryManager);
+            this.sceneManager = new SceneManager(this.memoryManager);
+            this.commandQueue = new SceneCommandQueue();
+            this.profiler = new GPUProfiler(PASS_NAMES, PROFILER_LATENCY);
+            this.stepCounter = new StepCounter(PROFILER_LATENCY);
+            this.frameCapture = new FrameCapture(CAPTURE_SLOT_COUNT);
+
+            // Shaders are compiled on the first render
+            this.shadersDirty = true;
+
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    public void registerShapeType(RenderShapeType type) {
+        // Any number of registrations costs a single compilation
+        this.shaderGenerator.registerShapeType(type);
+        this.pendingShapeTypeCount++;
+        this.shadersDirty = true;
+    }
+
+    public void compileScene() {
+        // Bake the current shapes into the shaders until the scene changes
+        this.shaderGenerator.setCompiledScene(this.sceneManager.getShapes());
+        this.compiledSceneVersion = this.sceneManager.getVersion();
+        this.shadersDirty = true;
+    }
+
+    public void bakeDistanceField(int resolution) {
+        // Bake the current shapes for secondary rays until the scene changes
+        deleteDistanceField();
+        DistanceFieldBaker baker = null;
+        try {
+            baker = new DistanceFieldBaker(Path.of(System.getProperty("user.home"), ".raymarcher", "sdf_cache"),
+                    DISTANCE_FIELD_CACHE_MAX_BYTES, Runtime.getRuntime().availableProcessors());
+            this.distanceField = baker.bake(this.sceneManager, this.assetManager, resolution);
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            if (baker != null) baker.cleanup();
+        }
+        if (this.distanceField == null) return;
+
+        this.distanceFieldTexture = new DistanceFieldTexture(this.distanceField);
+        this.bakedGeometryVersion = this.sceneManager.getGeometryVersion();
+        System.out.println(String.format("distance field texture %.1f MB",
+                (float)this.distanceFieldTexture.getByteCount() / (1024.0f * 1024.0f)));
+    }
+
+    public boolean isDistanceFieldBaked() {
+        return this.distanceFieldTexture != null;
+    }
+
+    public void setClipmap(boolean enabled) {
+        if (enabled == (this.clipmap != null)) return;
+
+        if (enabled) {
+            this.clipmap = new DistanceFieldClipmap(CLIPMAP_RESOLUTION, CLIPMAP_VOXEL_SIZE,
+                    Math.max(1, Runtime.getRuntime().availableProcessors() - 1), CLIPMAP_CACHE_MAX_BYTES);
+            this.clipmapTexture = new ClipmapTexture(DistanceFieldClipmap.LEVEL_COUNT, CLIPMAP_RESOLUTION);
+            System.out.println(String.format("clipmap %d levels of %d^3, %.1f MB", DistanceFieldClipmap.LEVEL_COUNT,
+                    CLIPMAP_RESOLUTION, (float)this.clipmapTexture.getByteCount() / (1024.0f * 1024.0f)));
+        } else {
+            deleteClipmap();
+        }
+    }
+
+    public boolean isClipmapEnabled() {
+        return this.clipmap != null;
+    }
+
+    public void captureScreenshot(Path directory) {
+        // Written by the capture thread a few frames later
+        this.frameCapture.requestScreenshot(directory);
+    }
+
+    public void startRecording(Path directory, CaptureFormat format) {
+        this.frameCapture.startRecording(directory, format);
+    }
+
+    public void stopRecording() {
+        this.frameCapture.stopRecording();
+    }
+
+    public boolean isRecording() {
+        return this.frameCapture.isRecording();
+    }
+
+    public boolean isSceneCompiled() {
+        return this.shaderGenerator.isSceneCompiled();
+    }
+
+    public RenderMaterial createMaterial() {
+        return this.assetManager.createMaterial();
+    }
+
+    public RenderShape createShape() {
+        return this.sceneManager.createShape();
+    }
+
+    public void removeMaterial(RenderMaterial material) {
+        // Shapes using it fall back to material 0
+        Material moved = this.assetManager.removeMaterial((Material)material);
+        this.sceneManager.removeMaterial((Material)material, moved);
+    }
+
+    public SceneCommandQueue getCommandQueue() {
+        // Scene mutations from other threads, applied at the start of the next frame
+        return this.commandQueue;
+    }
+
+    public void removeShape(RenderShape shape) {
+        this.sceneManager.removeShape((Shape)shape);
+    }
+
+    public int getShapeCount() {
+        return this.sceneManager.getShapeCount();
+    }
+
+    public RenderCamera getActiveCamera() {
+        return this.sceneManager.getActiveCamera();
+    }
+
+    public int getUploadedBytes() {
+        return this.memoryManager.getUploadedBytes();
+    }
+
+    public PassStatistics getFenceWait() {
+        // CPU time spent waiting for the GPU to release a region of the scene buffers
+        return this.memoryManager.getFenceWait();
+    }
+
+    public float getAverageShapesPerTile() {
+        return this.sceneManager.getTileCuller().getAverageShapesPerTile();
+    }
+
+    public GPUProfiler getProfiler() {
+        return this.profiler;
+    }
+
+    public void setProfilerReportInterval(int frameCount) {
+        // Print the pass timings every frameCount frames, 0 disables the report
+        this.profilerReportInterval = frameCount;
+    }
+
+    public void setDynamicResolution(boolean enabled) {
+        this.dynamicResolutionEnabled = enabled;
+        this.dynamicResolution.reset();
+        if (!enabled) {
+            selectResolution(this.dynamicResolution.getMaxLevel());
+        }
+    }
+
+    public boolean isDynamicResolutionEnabled() {
+        return this.dynamicResolutionEnabled;
+    }
+
+    public void setTargetFrameTime(float milliseconds) {
+        this.dynamicResolution.setTargetFrameTime(milliseconds);
+    }
+
+    public void setIndirectLightQuality(IndirectLightQuality quality) {
+        if (quality == this.indirectLightQuality) return;
+
+        // Report the cost of the tier being left so tiers can be compared
+        PassStatistics indirectLightPass = this.profiler.getPass(INDIRECT_LIGHT_PASS);
+        System.out.println(String.format("indirect light %s: %.3f ms avg, %.3f ms p95", this.indirectLightQuality,
+                indirectLightPass.getAverage(), indirectLightPass.getPercentile(95)));
+        indirectLightPass.reset();
+
+        this.indirectLightQuality = quality;
+        deleteBufferPool();
+        selectResolution(this.resolutionLevel);
+    }
+
+    public void setDepthPrepass(boolean enabled) {
+        if (enabled == this.depthPrepassEnabled) return;
+
+        // Report the steps of the mode being left so modes can be compared
+        if (this.stepStatisticsEnabled) {
+            System.out.print("depth prepass " + (this.depthPrepassEnabled ? "on" : "off") + "\n" + this.stepCounter.report());
+            this.stepCounter.reset();
+        }
+        this.depthPrepassEnabled = enabled;
+    }
+
+    public boolean isDepthPrepassEnabled() {
+        return this.depthPrepassEnabled;
+    }
+
+    public void setTemporalSeed(boolean enabled) {
+        if (enabled == this.temporalSeedEnabled) return;
+
+        // Report the steps of the mode being left so modes can be compared
+        if (this.stepStatisticsEnabled) {
+            System.out.print("temporal seed " + (this.temporalSeedEnabled ? "on" : "off") + "\n" + this.stepCounter.report());
+            this.stepCounter.reset();
+        }
+        this.temporalSeedEnabled = enabled;
+    }
+
+    public boolean isTemporalSeedEnabled() {
+        return this.temporalSeedEnabled;
+    }
+
+    public void setStepStatistics(boolean enabled) {
+        // Count raymarching steps of the primary rays and the depth prepass
+        this.stepStatisticsEnabled = enabled;
+        this.stepCounter.reset();
+    }
+
+    public StepCounter getStepCounter() {
+        return this.stepCounter;
+    }
+
+    public IndirectLightQuality getIndirectLightQuality() {
+        return this.indirectLightQuality;
+    }
+
+    public int getBufferWidth() {
+        return this.bufferWidth;
+    }
+
+    public int getBufferHeight() {
+        return this.bufferHeight;
+    }
+
+    public void cleanup() {
+        deleteBufferPool();
+        deleteEmptyVAO();
+        deleteShaders();
+        deleteDistanceField();
+        deleteClipmap();
+        this.frameCapture.cleanup();
+        deleteCaptureBuffer();
+        this.profiler.cleanup();
+        this.stepCounter.cleanup();
+    }
+
+    public void updateResolution(int width, int height) {
+        this.width = width;
+        this.height = height;
+
+        System.out.println("request new resolution " + this.width + " " + this.height);
+
+        // Pooled sizes are relative to the window and must be rebuilt
+        deleteBufferPool();
+        deleteCaptureBuffer();
+        if (this.dynamicResolutionEnabled) {
+            selectResolution(this.dynamicResolution.getLevel());
+        } else {
+            selectResolution(this.dynamicResolution.getMaxLevel());
+        }
+    }
+
+    public void update(float deltaTime) {
+
+    }
+
+    public void render() {
+        // Apply the mutations recorded by other threads, they go up with this frame's flush
+        this.commandQueue.drain(this);
+
+        // Fall back to the generic scene when the compiled one is outdated
+        if (this.shaderGenerator.isSceneCompiled() && this.sceneManager.getVersion() != this.compiledSceneVersion) {
+            System.out.println("scene changed, falling back to generic map()");
+            this.shaderGenerator.setCompiledScene(null);
+            this.shadersDirty = true;
+        }
+
+        // A baked distance field no longer bounds the moved shapes, material changes keep it
+        if (this.distanceFieldTexture != null && this.sceneManager.getGeometryVersion() != this.bakedGeometryVersion) {
+            System.out.println("scene changed, dropping baked distance field");
+            deleteDistanceField();
+        }
+
+        // Compile shaders if shape types or compiled scene changed
+        if (this.shadersDirty) {
+            compileShaders();
+        }
+
+        assert (glGetError() == 0);
+
+        // Adapt the internal resolution to the measured GPU frame time
+        if (this.profiler.beginFrame() && this.dynamicResolutionEnabled) {
+            if (this.dynamicResolution.addFrameTime(this.profiler.getFrame().getLatest())) {
+                selectResolution(this.dynamicResolution.getLevel());
+            }
+        }
+
+        if (this.stepStatisticsEnabled) {
+            this.stepCounter.beginFrame(this.bufferWidth * this.bufferHeight);
+        }
+
+        // Compute previous frame indice
+        int previousFrame = Math.floorMod(this.currentFrame - 1, FRAME_COUNT);
+
+        // Update camera
+        this.sceneManager.getActiveCamera().setRatio((float)this.width / (float)this.height);
+        // Moving keeps the indirect light history, it is reprojected per pixel
+        this.sceneManager.getActiveCamera().startFrame();
+
+        // Upload scene changes
+        this.sceneManager.updateAccelerationStructure();
+        this.sceneManager.updateTileLists(this.bufferWidth, this.bufferHeight);
+        this.memoryManager.flush();
+
+        // Move the clipmap levels with the camera, bricks are baked in the background
+        if (this.clipmap != null) {
+            this.clipmap.update(this.sceneManager, this.assetManager,
+                    this.sceneManager.getActiveCamera().getEye(), this.clipmapTexture);
+        }
+
+        /*-------------------*/
+        /*   DEPTH PREPASS   */
+        /*-------------------*/
+
+        this.profiler.begin(DEPTH_PREPASS);
+        if (this.depthPrepassEnabled) {
+            this.depthPrepassShader.bind();
+            this.prepassBuffer.setViewport();
+            this.prepassBuffer.bindFramebuffer();
+            this.sceneManager.getActiveCamera().pushGBufferPassUniforms();
+            glUniform2i(2, this.bufferWidth, this.bufferHeight);
+            glUniform1i(3, PREPASS_SCALE);
+            glUniform1i(5, this.stepStatisticsEnabled ? 1 : 0);
+            drawEmptyVAO();
+        }
+        this.profiler.end(DEPTH_PREPASS);
+
+        /*------------------*/
+        /*   GBUFFER PASS   */
+        /*------------------*/
+
+        this.profiler.begin(GBUFFER_PASS);
+        this.gBufferShader.bind();
+        this.gBuffers[this.currentFrame].setViewport();
+        this.gBuffers[this.currentFrame].bindFramebuffer();
+        this.sceneManager.getActiveCamera().pushGBufferPassUniforms();
+        glUniform1i(2, this.sceneManager.getTileCuller().getTileCountX());
+        glUniform1i(3, this.depthPrepassEnabled ? PREPASS_SCALE : 0);
+        glUniform1i(5, this.stepStatisticsEnabled ? 1 : 0);
+        this.prepassBuffer.bindSampler(0);
+
+        // Previous depth is only a valid seed if no shape changed since
+        boolean temporalSeed = this.temporalSeedEnabled && this.frameIndex > 0
+                && this.sceneManager.getVersion() == this.seededSceneVersion;
+        this.seededSceneVersion = this.sceneManager.getVersion();
+        glUniform1i(6, temporalSeed ? 1 : 0);
+        this.sceneManager.getActiveCamera().pushTemporalSeedUniforms();
+        this.gBuffers[previousFrame].bindAllSamplers(1);
+        pushClipmapUniforms();
+        glClear(GL_COLOR_BUFFER_BIT);
+        drawEmptyVAO();
+        this.profiler.end(GBUFFER_PASS);
+
+        /*-------------------------*/
+        /*   INDIRECT LIGHT PASS   */
+        /*-------------------------*/
+
+        this.profiler.begin(INDIRECT_LIGHT_PASS);
+        this.indirectLightShader.bind();
+        this.indirectLightBuffers[this.currentFrame].setViewport();
+        this.indirectLightBuffers[this.currentFrame].bindFramebuffer();
+        this.sceneManager.getActiveCamera().pushIndirectLightPassUniforms();
+        this.gBuffers[this.currentFrame].bindAllSamplers(0);
+        this.gBuffers[previousFrame].bindAllSamplers(3);
+        this.indirectLightBuffers[previousFrame].bindSampler(6);
+        glUniform1i(7, this.frameIndex);
+        glUniform1i(8, this.indirectLightQuality.getScale());
+        pushDistanceFieldUniforms();
+        pushClipmapUniforms();
+        drawEmptyVAO();
+        this.profiler.end(INDIRECT_LIGHT_PASS);
+
+        /*----------------*/
+        /*   LIGHT PASS   */
+        /*----------------*/
+
+        this.profiler.begin(LIGHT_PASS);
+        this.lightShader.bind();
+        this.colorBuffer.setViewport();
+        this.colorBuffer.bindFramebuffer();
+        this.gBuffers[this.currentFrame].bindAllSamplers(0);
+        this.indirectLightBuffers[this.currentFrame].bindSampler(3);
+        this.sceneManager.getActiveCamera().pushLightPassUniforms();
+        glUniform1i(4, this.indirectLightQuality.getScale());
+        pushDistanceFieldUniforms();
+        pushClipmapUniforms();
+        drawEmptyVAO();
+        this.profiler.end(LIGHT_PASS);
+
+        /*-----------------------*/
+        /*   POST-PROCESS PASS   */
+        /*-----------------------*/
+
+        this.profiler.begin(POST_PROCESS_PASS);
+        this.postProcessShader.bind();
+        glViewport(0, 0, this.width, this.height);
+        // Captured frames go through an offscreen target, the window may be hidden
+        boolean capture = this.frameCapture.isActive();
+        if (capture) {
+            if (this.captureBuffer == null) {
+                this.captureBuffer = new ColorBuffer(this.width, this.height, CAPTURE_FORMAT);
+            }
+            this.captureBuffer.bindFramebuffer();
+        } else {
+            glBindFramebuffer(GL_FRAMEBUFFER, 0);
+        }
+        this.colorBuffer.bindSampler(0);
+        drawEmptyVAO();
+        if (capture) {
+            glBlitNamedFramebuffer(this.captureBuffer.getFramebuffer(), 0, 0, 0, this.width, this.height,
+                    0, 0, this.width, this.height, GL_COLOR_BUFFER_BIT, GL_NEAREST);
+            this.frameCapture.capture(this.captureBuffer.getFramebuffer(), this.width, this.height);
+            glBindFramebuffer(GL_FRAMEBUFFER, 0);
+        }
+        this.profiler.end(POST_PROCESS_PASS);
+        this.frameCapture.update();
+        this.profiler.endFrame();
+        this.memoryManager.endFrame();
+        if (this.stepStatisticsEnabled) {
+            this.stepCounter.endFrame();
+        }
+
+        // Next frame
+        this.sceneManager.getActiveCamera().endFrame();
+        this.currentFrame = (this.currentFrame + 1) % FRAME_COUNT;
+        this.frameIndex++;
+
+        if (this.profilerReportInterval > 0 && this.profiler.getFrameCount() % this.profilerReportInterval == 0) {
+            System.out.print(this.profiler.report(this.memoryManager.getFenceWait()));
+            if (this.stepStatisticsEnabled) {
+                System.out.print(this.stepCounter.report());
+            }
+        }
+    }
+
+    private void selectResolution(int level) {
+        float scale = DynamicResolution.getScale(level);
+        int bufferWidth = Math.max(1, Math.round((float)this.width * scale));
+        int bufferHeight = Math.max(1, Math.round((float)this.height * scale));
+        int indirectScale = this.indirectLightQuality.getScale();
+        int indirectWidth = (bufferWidth + indirectScale - 1) / indirectScale;
+        int indirectHeight = (bufferHeight + indirectScale - 1) / indirectScale;
+
+        // Allocate the level on first use and keep it for later switches
+        if (this.colorBufferPool[level] == null) {
+            this.gBufferPool[level] = new GBuffer[FRAME_COUNT];
+            this.indirectLightBufferPool[level] = new ColorBuffer[FRAME_COUNT];
+            for (int i = 0; i < FRAME_COUNT; i++) {
+                this.gBufferPool[level][i] = new GBuffer(bufferWidth, bufferHeight);
+                this.indirectLightBufferPool[level][i] = new ColorBuffer(indirectWidth, indirectHeight, INDIRECT_LIGHT_FORMAT);
+            }
+            this.colorBufferPool[level] = new ColorBuffer(bufferWidth, bufferHeight, COLOR_FORMAT);
+            this.prepassBufferPool[level] = new ColorBuffer((bufferWidth + PREPASS_SCALE - 1) / PREPASS_SCALE,
+                    (bufferHeight + PREPASS_SCALE - 1) / PREPASS_SCALE, PREPASS_FORMAT);
+        }
+
+        if (this.gBuffers != this.gBufferPool[level]) {
+            long byteCount = this.colorBufferPool[level].getByteCount() + this.prepassBufferPool[level].getByteCount();
+            for (int i = 0; i < FRAME_COUNT; i++) {
+                byteCount += this.gBufferPool[level][i].getByteCount() + this.indirectLightBufferPool[level][i].getByteCount();
+            }
+            System.out.println("choosen resolution " + bufferWidth + " " + bufferHeight
+                    + String.format(" (%.1f MB of render targets)", (float)byteCount / (1024.0f * 1024.0f)));
+        }
+        this.bufferWidth = bufferWidth;
+        this.bufferHeight = bufferHeight;
+        this.resolutionLevel = level;
+        this.gBuffers = this.gBufferPool[level];
+        this.indirectLightBuffers = this.indirectLightBufferPool[level];
+        this.colorBuffer = this.colorBufferPool[level];
+        this.prepassBuffer = this.prepassBufferPool[level];
+
+        // Previous frame buffers belong to another resolution
+        this.frameIndex = 0;
+    }
+
+    private void deleteBufferPool() {
+        for (int level = 0; level < this.colorBufferPool.length; level++) {
+            if (this.colorBufferPool[level] == null) continue;
+            for (int i = 0; i < FRAME_COUNT; i++) {
+                this.gBufferPool[level][i].cleanup();
+                this.indirectLightBufferPool[level][i].cleanup();
+            }
+            this.colorBufferPool[level].cleanup();
+            this.prepassBufferPool[level].cleanup();
+            this.prepassBufferPool[level] = null;
+            this.gBufferPool[level] = null;
+            this.indirectLightBufferPool[level] = null;
+            this.colorBufferPool[level] = null;
+        }
+        this.gBuffers = null;
+        this.indirectLightBuffers = null;
+        this.colorBuffer = null;
+        this.prepassBuffer = null;
+    }
+
+    private void compileShaders() {
+        long start = System.nanoTime();
+        try {
+            deleteShaders();
+            createShaders();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        this.shadersDirty = false;
+
+        // Registrations since the last compilation were batched into this one, compiling eagerly would have
+        // cost one compilation per registration plus the initial one
+        float compileTime = (float)(System.nanoTime() - start) / 1000000.0f;
+        this.compileCount++;
+        int avoidedCount = Math.max(0, this.pendingShapeTypeCount + (this.compileCount == 1 ? 1 : 0) - 1);
+        System.out.println(String.format("compiled shaders in %.1f ms (compilation %d, %d shape types registered)",
+                compileTime, this.compileCount, this.pendingShapeTypeCount));
+        if (avoidedCount > 0) {
+            System.out.println(String.format("batching saved %d compilations (about %.0f ms estimated at this compile time)",
+                    avoidedCount, avoidedCount * compileTime));
+        }
+        System.out.println("program cache " + this.programCache.getHitCount() + " hits "
+                + this.programCache.getMissCount() + " misses");
+        this.pendingShapeTypeCount = 0;
+    }
+
+    private void createShaders() throws Exception {
+        this.depthPrepassShader = new RenderShader(this.shaderGenerator.getCode("gbuffer_pass.vert"),
+                this.shaderGenerator.getCode("depth_prepass.frag"), this.programCache);
+        this.gBufferShader = new RenderShader(this.shaderGenerator.getCode("gbuffer_pass.vert"),
+                this.shaderGenerator.getCode("gbuffer_pass.frag"), this.programCache);
+        this.indirectLightShader = new RenderShader(this.shaderGenerator.getCode("indirect_light_pass.vert"),
+                this.shaderGenerator.getCode("indirect_light_pass.frag"), this.programCache);
+        this.lightShader = new RenderShader(this.shaderGenerator.getCode("light_pass.vert"),
+                this.shaderGenerator.getCode("light_pass.frag"), this.programCache);
+        this.postProcessShader = new RenderShader(this.shaderGenerator.getCode("postprocess_pass.vert"),
+                this.shaderGenerator.getCode("postprocess_pass.frag"), this.programCache);
+    }
+    private void deleteShaders() {
+        if (this.depthPrepassShader != null) this.depthPrepassShader.cleanup();
+        if (this.gBufferShader != null) this.gBufferShader.cleanup();
+        if (this.indirectLightShader != null) this.indirectLightShader.cleanup();
+        if (this.lightShader != null) this.lightShader.cleanup();
+        if (this.postProcessShader != null) this.postProcessShader.cleanup();
+    }
+
+    private void createEmptyVAO() {
+        this.emptyVAO = glGenVertexArrays();
+    }
+    private void pushDistanceFieldUniforms() {
+        if (this.distanceFieldTexture == null) {
+            glUniform1i(21, 0);
+            return;
+        }
+        this.distanceFieldTexture.bindSampler(10);
+        glUniform1i(21, 1);
+        glUniform3f(22, this.distanceField.getMin().x, this.distanceField.getMin().y, this.distanceField.getMin().z);
+        glUniform3f(23, this.distanceField.getMax().x, this.distanceField.getMax().y, this.distanceField.getMax().z);
+    }
+    private void pushClipmapUniforms() {
+        if (this.clipmap == null) {
+            Arrays.fill(this.clipmapLevels, 0.0f);
+        } else {
+            this.clipmap.getLevelUniforms(this.clipmapLevels);
+            this.clipmapTexture.bindSamplers(11);
+        }
+        glUniform4fv(28, this.clipmapLevels);
+    }
+    private void deleteClipmap() {
+        if (this.clipmap != null) this.clipmap.cleanup();
+        if (this.clipmapTexture != null) this.clipmapTexture.cleanup();
+        this.clipmap = null;
+        this.clipmapTexture = null;
+    }
+    private void deleteCaptureBuffer() {
+        if (this.captureBuffer != null) this.captureBuffer.cleanup();
+        this.captureBuffer = null;
+    }
+    private void deleteDistanceField() {
+        if (this.distanceFieldTexture != null) this.distanceFieldTexture.cleanup();
+        this.distanceFieldTexture = null;
+        this.distanceField = null;
+    }
+
+    private void deleteEmptyVAO() {
+        glDeleteVertexArrays(this.emptyVAO);
+    }
+
+    private void drawEmptyVAO() {
+        glBindVertexArray(this.emptyVAO);
+        glDrawArrays(GL_TRIANGLES, 0, 3);
+        glBindVertexArray(0);
+    }
 }
\ No newline at end of file
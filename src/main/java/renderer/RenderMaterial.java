@@ -1,8 +1,8 @@
-package renderer;
-
-public interface RenderMaterial {
-    int getIndex();
-    void setAlbedo(float r, float g, float b);
-    void setMetallic(float metallic);
-    void setRoughness(float roughness);
+package renderer;
+
+public interface RenderMaterial {
+    int getIndex();
+    void setAlbedo(float r, float g, float b);
+    void setMetallic(float metallic);
+    void setRoughness(float roughness);
 }
\ No newline at end of file
@@ -1,10 +1,14 @@
-package renderer;
-
-public interface RenderShape {
-    int getIndex();
-    void setType(RenderShapeType type);
-    void setMaterial(RenderMaterial material);
-    void setPosition(float x, float y, float z);
-    void setF0(float x, float y, float z, float w);
-    void setF1(float x, float y, float z, float w);
+package renderer;
+
+public interface RenderShape {
+    int getIndex();
+    void setType(RenderShapeType type);
+    void setMaterial(RenderMaterial material);
+    void setPosition(float x, float y, float z);
+    void setF0(float x, float y, float z, float w);
+    void setF1(float x, float y, float z, float w);
+    // Bulk replacement of the instances, 8 floats each : position, scale and rotation quaternion (x, y, z, w)
+    void setInstances(float[] transforms, int count);
+    // Grid of copies from the shape position, a count of 0 repeats infinitely along the axis
+    void setRepetition(float periodX, float periodY, float periodZ, int countX, int countY, int countZ);
 }
\ No newline at end of file
@@ -1,11 +1,12 @@
-package renderer;
-
-
-import org.joml.Vector3f;
-
-public interface RenderShapeType {
-    int getID();
-    String getCode();
-    float getDistance(Vector3f p, RenderShapeParameters param);
-    float getSafeDistance();
+package renderer;
+
+
+import org.joml.Vector3f;
+
+public interface RenderShapeType {
+    int getID();
+    String getCode();
+    float getDistance(Vector3f p, RenderShapeParameters param);
+    float getSafeDistance();
+    void getBounds(RenderShapeParameters param, Vector3f min, Vector3f max);
 }
\ No newline at end of file
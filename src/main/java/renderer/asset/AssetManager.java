@@ -1,31 +1,92 @@
-package renderer.asset;
-
-import renderer.memory.MemoryManager;
-import renderer.shader.ShaderGenerator;
-
-import java.util.HashMap;
-import java.util.Map;
-
-public class AssetManager {
-    private MemoryManager memoryManager;
-    private Map<Integer, Material> materials;
-    private int nextShapeTypeID;
-
-    public AssetManager(MemoryManager memoryManager) {
-        this.memoryManager = memoryManager;
-        this.materials = new HashMap<>();
-        this.nextShapeTypeID = 0;
-    }
-
-    public Material createMaterial() {
-        Material material = new Material(this, this.nextShapeTypeID++);
-        this.materials.put(material.getIndex(), material);
-        this.memoryManager.updateMaterial(material);
-        this.memoryManager.setMaterialCount(this.materials.size());
-        return material;
-    }
-
-    public void updateMaterial(Material material) {
-        this.memoryManager.updateMaterial(material);
-    }
+package renderer.asset;
+
+import renderer.memory.MemoryManager;
+import renderer.memory.StructArena;
+import renderer.shader.ShaderGenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class AssetManager {
+    // Material indices are stored in a R16UI G-buffer attachment, 0xFFFF is reserved for the sky
+    public final static int MAX_MATERIAL_COUNT = 0xFFFF;
+
+    private MemoryManager memoryManager;
+    // Dense, the index of a material is its slot in the material arena
+    private List<Material> materials;
+    private StructArena materialArena;
+
+    public AssetManager(MemoryManager memoryManager) {
+        this.memoryManager = memoryManager;
+        this.materials = new ArrayList<>();
+        this.materialArena = memoryManager != null ? memoryManager.getMaterialArena()
+                : new StructArena(Material.BYTE_COUNT, MemoryManager.INITIAL_MATERIAL_CAPACITY);
+    }
+
+    public AssetManager() {
+        // Headless assets, nothing is uploaded to the GPU
+        this(null);
+    }
+
+    public Material createMaterial() {
+        int index = this.materials.size();
+        if (index >= MAX_MATERIAL_COUNT) {
+            throw new IllegalStateException("material count is limited to " + MAX_MATERIAL_COUNT);
+        }
+        this.materialArena.ensureCapacity(index + 1);
+        this.materialArena.clearSlot(index);
+        Material material = new Material(this, index);
+        this.materials.add(material);
+        if (this.memoryManager != null) {
+            this.memoryManager.setMaterialCount(this.materials.size());
+        }
+
+        // Default values
+        material.setAlbedo(1.0f, 1.0f, 1.0f);
+        material.setMetallic(0.5f);
+        material.setRoughness(0.5f);
+        return material;
+    }
+
+    public Material removeMaterial(Material material) {
+        int index = material.getIndex();
+        if (index < 0 || index >= this.materials.size() || this.materials.get(index) != material) {
+            throw new IllegalArgumentException("material is not part of the assets");
+        }
+
+        // Swap-remove, returns the material moved into the freed slot
+        Material last = this.materials.remove(this.materials.size() - 1);
+        Material moved = null;
+        if (last != material) {
+            this.materials.set(index, last);
+            this.materialArena.copySlot(last.getIndex(), index);
+            last.setIndex(index);
+            moved = last;
+        }
+        material.setIndex(-1);
+
+        if (this.memoryManager != null) {
+            this.memoryManager.setMaterialCount(this.materials.size());
+        }
+        return moved;
+    }
+
+    public void updateMaterial(Material material) {
+        if (material.getIndex() < 0) {
+            throw new IllegalStateException("material was removed");
+        }
+        this.materialArena.markDirty(material.getIndex());
+    }
+
+    public StructArena getMaterialArena() {
+        return this.materialArena;
+    }
+
+    public Material getMaterial(int index) {
+        return index < this.materials.size() ? this.materials.get(index) : null;
+    }
+
+    public int getMaterialCount() {
+        return this.materials.size();
+    }
 }
\ No newline at end of file
@@ -1,61 +1,85 @@
-package renderer.asset;
-
-import org.joml.Vector3f;
-import renderer.RenderMaterial;
-
-import java.nio.ByteBuffer;
-
-public class Material implements RenderMaterial {
-    public final static int BYTE_COUNT = 32;
-
-    public AssetManager manager;
-    public int index;
-
-    public Vector3f albedo;
-    public float metallic;
-    public float roughness;
-
-    public Material(AssetManager manager, int index) {
-        this.manager = manager;
-        this.index = index;
-        this.albedo = new Vector3f(1.0f, 1.0f, 1.0f);
-        this.metallic = 0.5f;
-        this.roughness = 0.5f;
-    }
-
-    @Override
-    public int getIndex() {
-        return this.index;
-    }
-
-    @Override
-    public void setAlbedo(float r, float g, float b) {
-        this.albedo.x = r;
-        this.albedo.y = g;
-        this.albedo.z = b;
-        this.manager.updateMaterial(this);
-    }
-
-    @Override
-    public void setMetallic(float metallic) {
-        this.metallic = metallic;
-        this.manager.updateMaterial(this);
-    }
-
-    @Override
-    public void setRoughness(float roughness) {
-        this.roughness = roughness;
-        this.manager.updateMaterial(this);
-    }
-
-    public void setIndex(int index) {
-        this.index = index;
-    }
-
-    public void writeBuffer(ByteBuffer buffer) {
-        int bufferStart = this.index * BYTE_COUNT;
-        this.albedo.get(bufferStart, buffer);
-        buffer.putFloat(bufferStart + 12, this.roughness);
-        buffer.putFloat(bufferStart + 16, this.metallic);
-    }
+package renderer.asset;
+
+import org.joml.Vector3f;
+import renderer.RenderMaterial;
+
+import java.nio.ByteBuffer;
+
+public class Material implements RenderMaterial {
+    public final static int BYTE_COUNT = 32;
+
+    // Field offsets, same layout as Material in scene.glsl
+    private final static int ALBEDO_OFFSET = 0;
+    private final static int ROUGHNESS_OFFSET = 12;
+    private final static int METALLIC_OFFSET = 16;
+
+    // Flyweight over a slot of the material arena, the fields are stored in place
+    private AssetManager manager;
+    private int index;
+
+    public Material(AssetManager manager, int index) {
+        this.manager = manager;
+        this.index = index;
+    }
+
+    @Override
+    public int getIndex() {
+        return this.index;
+    }
+
+    @Override
+    public void setAlbedo(float r, float g, float b) {
+        ByteBuffer buffer = getBuffer();
+        int start = getStart() + ALBEDO_OFFSET;
+        buffer.putFloat(start, r);
+        buffer.putFloat(start + 4, g);
+        buffer.putFloat(start + 8, b);
+        this.manager.updateMaterial(this);
+    }
+
+    @Override
+    public void setMetallic(float metallic) {
+        getBuffer().putFloat(getStart() + METALLIC_OFFSET, metallic);
+        this.manager.updateMaterial(this);
+    }
+
+    @Override
+    public void setRoughness(float roughness) {
+        getBuffer().putFloat(getStart() + ROUGHNESS_OFFSET, roughness);
+        this.manager.updateMaterial(this);
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public Vector3f getAlbedo(Vector3f dest) {
+        ByteBuffer buffer = getBuffer();
+        int start = getStart() + ALBEDO_OFFSET;
+        return dest.set(buffer.getFloat(start), buffer.getFloat(start + 4), buffer.getFloat(start + 8));
+    }
+
+    public float getMetallic() {
+        return getBuffer().getFloat(getStart() + METALLIC_OFFSET);
+    }
+
+    public float getRoughness() {
+        return getBuffer().getFloat(getStart() + ROUGHNESS_OFFSET);
+    }
+
+    public void writeBuffer(ByteBuffer buffer) {
+        // The arena already holds the layout, packing is a copy of the slot
+        this.manager.getMaterialArena().copySlot(this.index, buffer);
+    }
+
+    private ByteBuffer getBuffer() {
+        return this.manager.getMaterialArena().getBuffer();
+    }
+
+    private int getStart() {
+        if (this.index < 0) {
+            throw new IllegalStateException("material was removed");
+        }
+        return this.index * BYTE_COUNT;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,68 @@
+package renderer.cache;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class DiskCache {
+
+    // Entries are named after the hash of their key, the modification time orders them by use
+    private Path directory;
+    private String extension;
+    private long maxBytes;
+
+    public DiskCache(Path directory, String extension, long maxBytes) throws IOException {
+        this.directory = directory;
+        this.extension = extension;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(this.directory);
+    }
+
+    public static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public Path getFile(MessageDigest digest) {
+        StringBuilder name = new StringBuilder();
+        for (byte b : digest.digest()) {
+            name.append(String.format("%02x", b));
+        }
+        return this.directory.resolve(name + this.extension);
+    }
+
+    public void touch(Path file) throws IOException {
+        // Keep recently used entries
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+    }
+
+    public void evict(Path current) throws IOException {
+        // Remove least recently used entries above the size cap, the current one is kept
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(this.directory)) {
+            files = stream.filter(f -> f.toString().endsWith(this.extension)).collect(Collectors.toCollection(ArrayList::new));
+        }
+        files.sort(Comparator.comparing(f -> f.toFile().lastModified()));
+
+        long totalBytes = 0;
+        for (Path file : files) {
+            totalBytes += Files.size(file);
+        }
+        for (int i = 0; i < files.size() && totalBytes > this.maxBytes; i++) {
+            if (files.get(i).equals(current)) continue;
+            totalBytes -= Files.size(files.get(i));
+            Files.delete(files.get(i));
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,16 @@
+package renderer.capture;
+
+public enum CaptureFormat {
+    PNG(".png"),
+    RAW(".rgb");
+
+    private final String extension;
+
+    CaptureFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return this.extension;
+    }
+}
\ No newline at end of file
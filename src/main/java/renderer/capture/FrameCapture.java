@@ -0,0 +1,233 @@
+package renderer.capture;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.lwjgl.opengl.GL45.*;
+
+public class FrameCapture {
+    private final static int FREE = 0;
+    private final static int PENDING = 1;
+    private final static int WRITING = 2;
+
+    // Ring of pixel pack buffers, mapped once their fence is signaled
+    private int[] buffers;
+    private long[] capacities;
+    private long[] fences;
+    private int[] states;
+    private Path[] files;
+    private CaptureFormat[] formats;
+    private Path[] screenshotFiles;
+    private int[] widths;
+    private int[] heights;
+    private int nextSlot;
+    private int oldestSlot;
+
+    // Disk writes, slots come back once their pixels are on disk
+    private ExecutorService writer;
+    private PNGEncoder encoder;
+    private ConcurrentLinkedQueue<Integer> writtenSlots;
+
+    // Recording state
+    private Path directory;
+    private CaptureFormat format;
+    private Path screenshotDirectory;
+    private int frameNumber;
+    private int writtenFrames;
+    private int droppedFrames;
+
+    public FrameCapture(int slotCount) {
+        this.buffers = new int[slotCount];
+        this.capacities = new long[slotCount];
+        this.fences = new long[slotCount];
+        this.states = new int[slotCount];
+        this.files = new Path[slotCount];
+        this.formats = new CaptureFormat[slotCount];
+        this.screenshotFiles = new Path[slotCount];
+        this.widths = new int[slotCount];
+        this.heights = new int[slotCount];
+        glCreateBuffers(this.buffers);
+
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "capture writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.encoder = new PNGEncoder();
+        this.writtenSlots = new ConcurrentLinkedQueue<>();
+    }
+
+    public void cleanup() {
+        // Frames still on the GPU are handed over, then the writes are completed
+        glFinish();
+        update();
+        this.writer.shutdown();
+        try {
+            this.writer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        for (int slot = 0; slot < this.buffers.length; slot++) {
+            if (this.states[slot] == WRITING) glUnmapNamedBuffer(this.buffers[slot]);
+            if (this.fences[slot] != 0) glDeleteSync(this.fences[slot]);
+        }
+        glDeleteBuffers(this.buffers);
+        this.encoder.cleanup();
+    }
+
+    public void startRecording(Path directory, CaptureFormat format) {
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        this.directory = directory;
+        this.format = format;
+        this.frameNumber = 0;
+        this.writtenFrames = 0;
+        this.droppedFrames = 0;
+        System.out.println("recording to " + directory);
+    }
+
+    public void stopRecording() {
+        if (this.directory == null) return;
+        System.out.println("recording stopped, " + this.frameNumber + " frames captured, " + this.droppedFrames + " dropped");
+        this.directory = null;
+    }
+
+    public boolean isRecording() {
+        return this.directory != null;
+    }
+
+    public void requestScreenshot(Path directory) {
+        try {
+            Files.createDirectories(directory);
+            this.screenshotDirectory = directory;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public boolean isActive() {
+        return this.directory != null || this.screenshotDirectory != null;
+    }
+
+    public int getWrittenFrames() {
+        return this.writtenFrames;
+    }
+
+    public int getDroppedFrames() {
+        return this.droppedFrames;
+    }
+
+    public void capture(int framebuffer, int width, int height) {
+        // A full ring drops the frame instead of waiting for the disk
+        int slot = this.nextSlot;
+        if (this.states[slot] != FREE) {
+            if (this.directory != null) {
+                this.frameNumber++;
+                this.droppedFrames++;
+            }
+            return;
+        }
+
+        long byteCount = 3L * width * height;
+        if (this.capacities[slot] < byteCount) {
+            glNamedBufferData(this.buffers[slot], byteCount, GL_STREAM_READ);
+            this.capacities[slot] = byteCount;
+        }
+
+        // Asynchronous copy into the pack buffer, nothing is read back yet
+        glBindFramebuffer(GL_READ_FRAMEBUFFER, framebuffer);
+        glBindBuffer(GL_PIXEL_PACK_BUFFER, this.buffers[slot]);
+        glPixelStorei(GL_PACK_ALIGNMENT, 1);
+        glReadPixels(0, 0, width, height, GL_RGB, GL_UNSIGNED_BYTE, 0);
+        glBindBuffer(GL_PIXEL_PACK_BUFFER, 0);
+        glBindFramebuffer(GL_READ_FRAMEBUFFER, 0);
+        this.fences[slot] = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+
+        // A screenshot taken while recording shares the read back of the recorded frame
+        this.files[slot] = null;
+        this.screenshotFiles[slot] = null;
+        if (this.directory != null) {
+            this.files[slot] = this.directory.resolve(String.format("frame_%06d_%dx%d%s",
+                    this.frameNumber++, width, height, this.format.getExtension()));
+            this.formats[slot] = this.format;
+        }
+        if (this.screenshotDirectory != null) {
+            this.screenshotFiles[slot] = this.screenshotDirectory.resolve("screenshot_" + System.currentTimeMillis() + CaptureFormat.PNG.getExtension());
+            this.screenshotDirectory = null;
+        }
+        this.widths[slot] = width;
+        this.heights[slot] = height;
+        this.states[slot] = PENDING;
+        this.nextSlot = (slot + 1) % this.buffers.length;
+    }
+
+    public void update() {
+        // Slots written to disk can be unmapped and reused
+        Integer written;
+        while ((written = this.writtenSlots.poll()) != null) {
+            glUnmapNamedBuffer(this.buffers[written]);
+            this.states[written] = FREE;
+            if (this.files[written] != null) this.writtenFrames++;
+        }
+
+        // Hand the signaled slots to the writer, in capture order
+        while (this.states[this.oldestSlot] == PENDING) {
+            int slot = this.oldestSlot;
+            if (glGetSynci(this.fences[slot], GL_SYNC_STATUS, null) != GL_SIGNALED) break;
+            glDeleteSync(this.fences[slot]);
+            this.fences[slot] = 0;
+
+            // The writer reads the mapped memory directly
+            long byteCount = 3L * this.widths[slot] * this.heights[slot];
+            ByteBuffer pixels = glMapNamedBufferRange(this.buffers[slot], 0, byteCount, GL_MAP_READ_BIT);
+            this.oldestSlot = (slot + 1) % this.buffers.length;
+            if (pixels == null) {
+                this.states[slot] = FREE;
+                if (this.files[slot] != null) this.droppedFrames++;
+                continue;
+            }
+            this.states[slot] = WRITING;
+            Path file = this.files[slot];
+            CaptureFormat format = this.formats[slot];
+            Path screenshotFile = this.screenshotFiles[slot];
+            int width = this.widths[slot];
+            int height = this.heights[slot];
+            this.writer.execute(() -> {
+                if (file != null) write(file, format, pixels, width, height);
+                if (screenshotFile != null) write(screenshotFile, CaptureFormat.PNG, pixels, width, height);
+                this.writtenSlots.add(slot);
+            });
+        }
+    }
+
+    private void write(Path file, CaptureFormat format, ByteBuffer pixels, int width, int height) {
+        try {
+            if (format == CaptureFormat.PNG) {
+                this.encoder.encode(file, pixels, width, height);
+            } else {
+                // Raw frames are the bottom-up RGB rows as read from GL
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    ByteBuffer data = pixels.duplicate();
+                    while (data.hasRemaining()) {
+                        channel.write(data);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
\ No newline at end of file
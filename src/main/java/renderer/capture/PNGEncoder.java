@@ -0,0 +1,105 @@
+package renderer.capture;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+class PNGEncoder {
+    private final static byte[] SIGNATURE = {(byte)0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private final static byte[] FILTER_NONE = {0};
+    private final static int CHUNK_BYTE_COUNT = 64 * 1024;
+
+    private Deflater deflater;
+    private CRC32 crc;
+    private ByteBuffer chunk;
+    private FileChannel channel;
+
+    PNGEncoder() {
+        // Capture favors throughput over file size
+        this.deflater = new Deflater(Deflater.BEST_SPEED);
+        this.crc = new CRC32();
+        this.chunk = ByteBuffer.allocateDirect(12 + CHUNK_BYTE_COUNT);
+    }
+
+    void encode(Path file, ByteBuffer pixels, int width, int height) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            this.channel = channel;
+            this.channel.write(ByteBuffer.wrap(SIGNATURE));
+
+            // 8 bits RGB, no interlacing
+            beginChunk("IHDR");
+            this.chunk.putInt(width).putInt(height).put((byte)8).put((byte)2).put((byte)0).put((byte)0).put((byte)0);
+            endChunk();
+
+            // GL rows are bottom-up, they are deflated straight from the pixels in reverse order
+            this.deflater.reset();
+            beginChunk("IDAT");
+            int rowLength = width * 3;
+            for (int y = height - 1; y >= 0; y--) {
+                this.deflater.setInput(FILTER_NONE);
+                deflate(false);
+                ByteBuffer row = pixels.duplicate();
+                row.position(y * rowLength).limit((y + 1) * rowLength);
+                this.deflater.setInput(row);
+                deflate(false);
+            }
+            this.deflater.finish();
+            deflate(true);
+            endChunk();
+
+            beginChunk("IEND");
+            endChunk();
+        } finally {
+            this.channel = null;
+        }
+    }
+
+    void cleanup() {
+        this.deflater.end();
+    }
+
+    private void deflate(boolean finish) throws IOException {
+        while (!this.deflater.finished()) {
+            if (!this.chunk.hasRemaining()) {
+                // Data is split over several IDAT chunks, decoders concatenate them
+                endChunk();
+                beginChunk("IDAT");
+            }
+            this.deflater.deflate(this.chunk);
+            // Until finished, stop once the input is consumed
+            if (!finish && this.deflater.needsInput() && this.chunk.hasRemaining()) break;
+        }
+    }
+
+    private void beginChunk(String type) {
+        this.chunk.clear();
+        this.chunk.putInt(0);
+        this.chunk.put(type.getBytes(StandardCharsets.US_ASCII));
+        this.chunk.limit(this.chunk.capacity() - 4);
+    }
+
+    private void endChunk() throws IOException {
+        int end = this.chunk.position();
+        this.chunk.limit(this.chunk.capacity());
+        this.chunk.putInt(0, end - 8);
+
+        // CRC covers the type and the data
+        this.crc.reset();
+        ByteBuffer covered = this.chunk.duplicate();
+        covered.position(4).limit(end);
+        this.crc.update(covered);
+        this.chunk.position(end);
+        this.chunk.putInt((int)this.crc.getValue());
+
+        this.chunk.flip();
+        while (this.chunk.hasRemaining()) {
+            this.channel.write(this.chunk);
+        }
+    }
+}
\ No newline at end of file
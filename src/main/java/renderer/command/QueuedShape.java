@@ -0,0 +1,100 @@
+package renderer.command;
+
+import renderer.RenderMaterial;
+import renderer.RenderShape;
+import renderer.RenderShapeType;
+import renderer.entity.Shape;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+class QueuedShape implements RenderShape {
+
+    private SceneCommandQueue queue;
+
+    // Set by the render thread, read by any thread
+    private volatile RenderShape shape;
+    // Render thread only
+    private boolean removed;
+
+    QueuedShape(SceneCommandQueue queue) {
+        this.queue = queue;
+        this.shape = null;
+        this.removed = false;
+    }
+
+    @Override
+    public int getIndex() {
+        // -1 until created and once removed, may be outdated off the render thread
+        RenderShape shape = this.shape;
+        return shape == null ? -1 : shape.getIndex();
+    }
+
+    @Override
+    public void setType(RenderShapeType type) {
+        record(shape -> shape.setType(type));
+    }
+
+    @Override
+    public void setMaterial(RenderMaterial material) {
+        record(shape -> shape.setMaterial(material));
+    }
+
+    @Override
+    public void setPosition(float x, float y, float z) {
+        record(shape -> shape.setPosition(x, y, z));
+    }
+
+    @Override
+    public void setF0(float x, float y, float z, float w) {
+        record(shape -> shape.setF0(x, y, z, w));
+    }
+
+    @Override
+    public void setF1(float x, float y, float z, float w) {
+        record(shape -> shape.setF1(x, y, z, w));
+    }
+
+    @Override
+    public void setInstances(float[] transforms, int count) {
+        // Validated and copied now, the caller may reuse its array before the drain
+        if (count < 0 || count > Shape.MAX_INSTANCE_COUNT) {
+            throw new IllegalArgumentException("instance count must be in [0, " + Shape.MAX_INSTANCE_COUNT + "]");
+        }
+        float[] copy = Arrays.copyOf(transforms, count * Shape.INSTANCE_FLOAT_COUNT);
+        record(shape -> shape.setInstances(copy, count));
+    }
+
+    @Override
+    public void setRepetition(float periodX, float periodY, float periodZ, int countX, int countY, int countZ) {
+        if (periodX <= 0.0f || periodY <= 0.0f || periodZ <= 0.0f) {
+            throw new IllegalArgumentException("repetition period must be positive");
+        }
+        record(shape -> shape.setRepetition(periodX, periodY, periodZ, countX, countY, countZ));
+    }
+
+    void create(SceneCommandTarget target) {
+        this.shape = target.createShape();
+    }
+
+    void remove(SceneCommandTarget target) {
+        if (this.removed) {
+            this.queue.drop();
+            return;
+        }
+        target.removeShape(this.shape);
+        this.removed = true;
+        this.shape = null;
+    }
+
+    private void record(Consumer<RenderShape> mutation) {
+        // The creation is always recorded first, only a removal leaves the shape unset
+        this.queue.record(target -> {
+            if (this.removed) {
+                this.queue.drop();
+            } else {
+                mutation.accept(this.shape);
+            }
+        });
+    }
+}
\ No newline at end of file
@@ -0,0 +1,6 @@
+package renderer.command;
+
+interface SceneCommand {
+    // Run by the render thread while draining the queue
+    void apply(SceneCommandTarget target);
+}
\ No newline at end of file
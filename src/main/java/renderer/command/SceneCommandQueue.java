@@ -0,0 +1,60 @@
+package renderer.command;
+
+import renderer.RenderShape;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SceneCommandQueue {
+
+    // Lock-free, any thread records and the render thread drains
+    private ConcurrentLinkedQueue<SceneCommand> commands;
+    private AtomicInteger recordedCount;
+
+    // Render thread only
+    private int droppedCount;
+
+    public SceneCommandQueue() {
+        this.commands = new ConcurrentLinkedQueue<>();
+        this.recordedCount = new AtomicInteger();
+        this.droppedCount = 0;
+    }
+
+    public RenderShape createShape() {
+        // The handle can be used right away, the shape itself is created on the next drain
+        QueuedShape shape = new QueuedShape(this);
+        record(shape::create);
+        return shape;
+    }
+
+    public void removeShape(RenderShape shape) {
+        if (!(shape instanceof QueuedShape)) {
+            throw new IllegalArgumentException("shape was not created by the command queue");
+        }
+        record(((QueuedShape)shape)::remove);
+    }
+
+    public int drain(SceneCommandTarget target) {
+        // Only the commands recorded before the drain started, producers may keep recording
+        int count = this.recordedCount.getAndSet(0);
+        for (int i = 0; i < count; i++) {
+            this.commands.poll().apply(target);
+        }
+        return count;
+    }
+
+    public int getDroppedCount() {
+        // Commands recorded for shapes that were already removed
+        return this.droppedCount;
+    }
+
+    void record(SceneCommand command) {
+        // Added before counted, a drain never polls an empty queue
+        this.commands.add(command);
+        this.recordedCount.incrementAndGet();
+    }
+
+    void drop() {
+        this.droppedCount++;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,9 @@
+package renderer.command;
+
+import renderer.RenderShape;
+
+public interface SceneCommandTarget {
+    // Scene the queue is drained into, the render context or a headless scene
+    RenderShape createShape();
+    void removeShape(RenderShape shape);
+}
\ No newline at end of file
@@ -0,0 +1,236 @@
+package renderer.cpu;
+
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import org.joml.Vector4f;
+import renderer.RenderCamera;
+import renderer.RenderMaterial;
+import renderer.RenderShape;
+import renderer.asset.AssetManager;
+import renderer.entity.Camera;
+import renderer.entity.SceneManager;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+
+public class CPURenderContext {
+
+    public final static int TILE_SIZE = 16;
+
+    private int width;
+    private int height;
+    private int tileCountX;
+    private int tileCountY;
+
+    // Managers
+    private SceneManager sceneManager;
+    private AssetManager assetManager;
+
+    // Workers
+    private ForkJoinPool pool;
+    private ThreadLocal<Raymarcher> raymarchers;
+    private LongAdder rayCount;
+
+    // Images (rows are stored bottom-up, like the GL textures)
+    private ImageBuffer positionDepthBuffer;
+    private ImageBuffer normalMaterialBuffer;
+    private ImageBuffer directLightBuffer;
+    private ImageBuffer indirectLightBuffer;
+    private ImageBuffer colorBuffer;
+    private int frameIndex;
+
+    // Frame state
+    private SceneSnapshot snapshot;
+    private Matrix4f invVPMatrix;
+    private Vector3f eye;
+
+    public CPURenderContext(int width, int height, int threadCount) {
+        this(new SceneManager(), new AssetManager(), width, height, threadCount);
+    }
+
+    public CPURenderContext(SceneManager sceneManager, AssetManager assetManager, int width, int height, int threadCount) {
+        this.sceneManager = sceneManager;
+        this.assetManager = assetManager;
+
+        this.pool = new ForkJoinPool(threadCount);
+        this.raymarchers = ThreadLocal.withInitial(Raymarcher::new);
+        this.rayCount = new LongAdder();
+
+        this.invVPMatrix = new Matrix4f();
+        this.eye = new Vector3f();
+        this.frameIndex = 0;
+
+        updateResolution(width, height);
+    }
+
+    public RenderMaterial createMaterial() {
+        return this.assetManager.createMaterial();
+    }
+
+    public RenderShape createShape() {
+        return this.sceneManager.createShape();
+    }
+
+    public RenderCamera getActiveCamera() {
+        return this.sceneManager.getActiveCamera();
+    }
+
+    public int getThreadCount() {
+        return this.pool.getParallelism();
+    }
+
+    public long getRayCount() {
+        return this.rayCount.sum();
+    }
+
+    public void resetRayCount() {
+        this.rayCount.reset();
+    }
+
+    public ImageBuffer getPositionDepthBuffer() {
+        return this.positionDepthBuffer;
+    }
+
+    public ImageBuffer getNormalMaterialBuffer() {
+        return this.normalMaterialBuffer;
+    }
+
+    public ImageBuffer getDirectLightBuffer() {
+        return this.directLightBuffer;
+    }
+
+    public ImageBuffer getIndirectLightBuffer() {
+        return this.indirectLightBuffer;
+    }
+
+    public ImageBuffer getColorBuffer() {
+        return this.colorBuffer;
+    }
+
+    public void cleanup() {
+        this.pool.shutdown();
+    }
+
+    public void updateResolution(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.tileCountX = (width + TILE_SIZE - 1) / TILE_SIZE;
+        this.tileCountY = (height + TILE_SIZE - 1) / TILE_SIZE;
+
+        this.positionDepthBuffer = new ImageBuffer(width, height, 4);
+        this.normalMaterialBuffer = new ImageBuffer(width, height, 4);
+        this.directLightBuffer = new ImageBuffer(width, height, 3);
+        this.indirectLightBuffer = new ImageBuffer(width, height, 3);
+        this.colorBuffer = new ImageBuffer(width, height, 3);
+    }
+
+    public void render() {
+        // Update camera
+        Camera camera = this.sceneManager.getActiveCamera();
+        camera.setRatio((float)this.width / (float)this.height);
+        camera.startFrame();
+        if (camera.hasMoved()) {
+            this.frameIndex = 0;
+        }
+        this.invVPMatrix.set(camera.getViewProjectionMatrix()).invert();
+        this.eye.set(camera.getEye());
+
+        // Freeze the scene for the workers
+        this.snapshot = new SceneSnapshot(this.sceneManager, this.assetManager);
+
+        // Render all tiles
+        this.pool.invoke(new RangeTask(this::renderTile, 0, this.tileCountX * this.tileCountY));
+
+        // Next frame
+        camera.endFrame();
+        this.frameIndex++;
+    }
+
+    private void renderTile(int tile) {
+        Raymarcher raymarcher = this.raymarchers.get();
+        raymarcher.begin(this.snapshot);
+
+        int startX = (tile % this.tileCountX) * TILE_SIZE;
+        int startY = (tile / this.tileCountX) * TILE_SIZE;
+        int endX = Math.min(startX + TILE_SIZE, this.width);
+        int endY = Math.min(startY + TILE_SIZE, this.height);
+
+        Vector4f ptransform = new Vector4f();
+        float[] albedos = this.snapshot.albedos;
+
+        for (int y = startY; y < endY; y++) {
+            for (int x = startX; x < endX; x++) {
+                float u = ((float)x + 0.5f) / (float)this.width;
+                float v = ((float)y + 0.5f) / (float)this.height;
+
+                /*------------------*/
+                /*   GBUFFER PASS   */
+                /*------------------*/
+
+                // Get direction vector
+                this.invVPMatrix.transform(ptransform.set(u * 2.0f - 1.0f, v * 2.0f - 1.0f, 1.0f, 1.0f));
+                float dx = ptransform.x / ptransform.w - this.eye.x;
+                float dy = ptransform.y / ptransform.w - this.eye.y;
+                float dz = ptransform.z / ptransform.w - this.eye.z;
+                float invLength = 1.0f / (float)Math.sqrt(dx * dx + dy * dy + dz * dz);
+                dx *= invLength;
+                dy *= invLength;
+                dz *= invLength;
+
+                // Primary ray
+                if (!raymarcher.intersectScene(this.eye.x, this.eye.y, this.eye.z, dx, dy, dz, Raymarcher.MAX_DISTANCE)) {
+                    write(this.positionDepthBuffer, x, y, 0, 0, 0, Raymarcher.MAX_DISTANCE);
+                    write(this.normalMaterialBuffer, x, y, dx, dy, dz, -1);
+                    write(this.directLightBuffer, x, y, 0, 0, 0);
+                    write(this.indirectLightBuffer, x, y, 0, 0, 0);
+
+                    // Render sky background
+                    float sky = Math.abs(1.0f - dy) * 0.4f;
+                    write(this.colorBuffer, x, y, 1.0f / 500.0f + sky, 163.0f / 500.0f + sky, 236.0f / 500.0f + sky);
+                    continue;
+                }
+
+                float px = raymarcher.hitX, py = raymarcher.hitY, pz = raymarcher.hitZ;
+                float nx = raymarcher.normalX, ny = raymarcher.normalY, nz = raymarcher.normalZ;
+                int id = raymarcher.shapeID;
+                float r = albedos[id * 3 + 0], g = albedos[id * 3 + 1], b = albedos[id * 3 + 2];
+                write(this.positionDepthBuffer, x, y, px, py, pz, raymarcher.depth);
+                write(this.normalMaterialBuffer, x, y, nx, ny, nz, this.snapshot.materialIDs[id]);
+
+                /*-------------------------*/
+                /*   INDIRECT LIGHT PASS   */
+                /*-------------------------*/
+
+                raymarcher.indirectLight(px, py, pz, nx, ny, nz, u + this.frameIndex);
+                float giR = raymarcher.lightR * r, giG = raymarcher.lightG * g, giB = raymarcher.lightB * b;
+                write(this.indirectLightBuffer, x, y, giR, giG, giB);
+
+                /*----------------*/
+                /*   LIGHT PASS   */
+                /*----------------*/
+
+                raymarcher.directLight(px, py, pz, nx, ny, nz);
+                write(this.directLightBuffer, x, y, raymarcher.lightR, raymarcher.lightG, raymarcher.lightB);
+                write(this.colorBuffer, x, y,
+                        (raymarcher.lightR + giR) * r,
+                        (raymarcher.lightG + giG) * g,
+                        (raymarcher.lightB + giB) * b);
+            }
+        }
+
+        this.rayCount.add(raymarcher.getRayCount());
+    }
+
+    private static void write(ImageBuffer image, int x, int y, float r, float g, float b) {
+        image.set(x, y, 0, r);
+        image.set(x, y, 1, g);
+        image.set(x, y, 2, b);
+    }
+
+    private static void write(ImageBuffer image, int x, int y, float r, float g, float b, float a) {
+        image.set(x, y, 0, r);
+        image.set(x, y, 1, g);
+        image.set(x, y, 2, b);
+        image.set(x, y, 3, a);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,36 @@
+package renderer.cpu;
+
+class ClipmapBrick {
+
+    final int level;
+    final int x, y, z; // In bricks, world aligned
+    final int generation;
+    final boolean refinement; // Rebake of a window brick after a nearby change
+    float[] data;
+    float maxDistance;
+    // Render thread only, set once collected from the workers, the data is not read before
+    boolean completed;
+
+    // Last scene change applied to the data, loose once a change overlapped the brick
+    SceneChange change;
+    boolean loose;
+
+    ClipmapBrick(int level, int x, int y, int z, int generation, boolean refinement, SceneChange change) {
+        this.level = level;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.generation = generation;
+        this.refinement = refinement;
+        this.change = change;
+    }
+
+    long getKey() {
+        return getKey(this.level, this.x, this.y, this.z);
+    }
+
+    static long getKey(int level, int x, int y, int z) {
+        // 4 bits of level and 20 bits per signed coordinate
+        return ((long)level << 60) | ((long)(x & 0xFFFFF) << 40) | ((long)(y & 0xFFFFF) << 20) | (long)(z & 0xFFFFF);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,38 @@
+package renderer.cpu;
+
+import org.joml.Vector3f;
+
+import java.nio.FloatBuffer;
+
+public class DistanceField {
+
+    private int resolution;
+    private Vector3f min;
+    private Vector3f max;
+
+    // Samples on the grid corners, x varies fastest, backed by the cache file
+    private FloatBuffer data;
+
+    DistanceField(int resolution, Vector3f min, Vector3f max, FloatBuffer data) {
+        this.resolution = resolution;
+        this.min = min;
+        this.max = max;
+        this.data = data;
+    }
+
+    public int getResolution() {
+        return this.resolution;
+    }
+
+    public Vector3f getMin() {
+        return this.min;
+    }
+
+    public Vector3f getMax() {
+        return this.max;
+    }
+
+    public FloatBuffer getData() {
+        return this.data;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,167 @@
+package renderer.cpu;
+
+import org.joml.Vector3f;
+import org.lwjgl.BufferUtils;
+import renderer.asset.AssetManager;
+import renderer.entity.SceneManager;
+import renderer.entity.Shape;
+
+import renderer.cache.DiskCache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.concurrent.ForkJoinPool;
+
+public class DistanceFieldBaker {
+    private final static String EXTENSION = ".sdf";
+    private final static int MAGIC = 0x53444631;
+    private final static int HEADER_BYTE_COUNT = 32;
+    private final static float PADDING = 0.05f;
+
+    private DiskCache cache;
+    private ForkJoinPool pool;
+    private ThreadLocal<Raymarcher> raymarchers;
+
+    // Current bake
+    private SceneSnapshot snapshot;
+    private int resolution;
+    private Vector3f min;
+    private Vector3f step;
+    private FloatBuffer data;
+
+    public DistanceFieldBaker(Path directory, long maxBytes, int threadCount) throws IOException {
+        this.cache = new DiskCache(directory, EXTENSION, maxBytes);
+        this.pool = new ForkJoinPool(threadCount);
+        this.raymarchers = ThreadLocal.withInitial(Raymarcher::new);
+    }
+
+    public void cleanup() {
+        this.pool.shutdown();
+    }
+
+    public DistanceField bake(SceneManager sceneManager, AssetManager assetManager, int resolution) throws IOException {
+        // Bounds of the finite shapes, unbounded ones only contribute distances
+        Vector3f min = new Vector3f(Float.POSITIVE_INFINITY);
+        Vector3f max = new Vector3f(Float.NEGATIVE_INFINITY);
+        Vector3f shapeMin = new Vector3f();
+        Vector3f shapeMax = new Vector3f();
+        boolean bounded = false;
+        for (Shape shape : sceneManager.getShapes()) {
+            if (shape.getWorldBounds(shapeMin, shapeMax)) {
+                min.min(shapeMin);
+                max.max(shapeMax);
+                bounded = true;
+            }
+        }
+        if (!bounded) return null;
+        Vector3f padding = new Vector3f(max).sub(min).mul(PADDING).add(1.0f, 1.0f, 1.0f);
+        min.sub(padding);
+        max.add(padding);
+
+        SceneSnapshot snapshot = new SceneSnapshot(sceneManager, assetManager);
+        Path file = getFile(snapshot, resolution, min, max);
+        long byteCount = HEADER_BYTE_COUNT + 4L * resolution * resolution * resolution;
+
+        // The mapping stays valid once the channel is closed
+        MappedByteBuffer buffer;
+        boolean cached;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            cached = channel.size() == byteCount;
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, byteCount);
+        }
+        buffer.order(ByteOrder.nativeOrder());
+        cached = cached && buffer.getInt(0) == MAGIC;
+
+        buffer.position(HEADER_BYTE_COUNT);
+        FloatBuffer data = buffer.slice().order(ByteOrder.nativeOrder()).asFloatBuffer();
+        buffer.position(0);
+
+        if (cached) {
+            System.out.println("distance field " + resolution + "^3 loaded from " + file);
+            this.cache.touch(file);
+        } else {
+            long start = System.nanoTime();
+
+            // Invalid until every sample is written
+            buffer.putInt(0, 0);
+            buffer.putInt(4, resolution);
+            buffer.putFloat(8, min.x).putFloat(12, min.y).putFloat(16, min.z);
+            buffer.putFloat(20, max.x).putFloat(24, max.y).putFloat(28, max.z);
+
+            this.snapshot = snapshot;
+            this.resolution = resolution;
+            this.min = min;
+            this.step = new Vector3f(max).sub(min).div((float)(resolution - 1));
+            this.data = data;
+            this.pool.invoke(new RangeTask(this::bakeSlice, 0, resolution));
+            this.snapshot = null;
+            this.data = null;
+
+            buffer.force();
+            buffer.putInt(0, MAGIC);
+            buffer.force();
+            System.out.println(String.format("distance field %d^3 baked in %.1f ms", resolution,
+                    (float)(System.nanoTime() - start) / 1000000.0f));
+
+            this.cache.touch(file);
+            this.cache.evict(file);
+        }
+
+        return new DistanceField(resolution, min, max, data);
+    }
+
+    private void bakeSlice(int z) {
+        Raymarcher raymarcher = this.raymarchers.get();
+        raymarcher.begin(this.snapshot);
+        int resolution = this.resolution;
+        float pz = this.min.z + this.step.z * z;
+        for (int y = 0; y < resolution; y++) {
+            float py = this.min.y + this.step.y * y;
+            int row = (z * resolution + y) * resolution;
+            for (int x = 0; x < resolution; x++) {
+                this.data.put(row + x, raymarcher.map(this.min.x + this.step.x * x, py, pz));
+            }
+        }
+    }
+
+    private Path getFile(SceneSnapshot snapshot, int resolution, Vector3f min, Vector3f max) {
+        MessageDigest digest = DiskCache.createDigest();
+        // Direct, JOML writes the parameters with raw memory access
+        ByteBuffer bytes = BufferUtils.createByteBuffer(48);
+        bytes.putInt(resolution);
+        bytes.putFloat(min.x).putFloat(min.y).putFloat(min.z);
+        bytes.putFloat(max.x).putFloat(max.y).putFloat(max.z);
+        digest.update(bytes.flip());
+        for (int i = 0; i < snapshot.count; i++) {
+            bytes.clear();
+            bytes.putInt(snapshot.types[i].getID());
+            bytes.putFloat(snapshot.positions[i * 3]);
+            bytes.putFloat(snapshot.positions[i * 3 + 1]);
+            bytes.putFloat(snapshot.positions[i * 3 + 2]);
+            snapshot.parameters[i].writeBuffer(16, bytes);
+            digest.update(bytes.position(48).flip());
+
+            // Instanced and repeated copies change the field too
+            bytes.clear();
+            bytes.putInt(snapshot.instanceCounts[i]);
+            for (int j = 0; j < 6; j++) {
+                bytes.putFloat(snapshot.repetitions[i * 6 + j]);
+            }
+            digest.update(bytes.flip());
+            if (snapshot.instances[i] != null) {
+                ByteBuffer instances = ByteBuffer.allocate(snapshot.instances[i].length * 4);
+                instances.asFloatBuffer().put(snapshot.instances[i]);
+                digest.update(instances.array());
+            }
+        }
+        return this.cache.getFile(digest);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,398 @@
+package renderer.cpu;
+
+import org.joml.Vector3f;
+import org.joml.Vector3i;
+import renderer.asset.AssetManager;
+import renderer.entity.SceneManager;
+import renderer.memory.ClipmapTexture;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+
+public class DistanceFieldClipmap {
+
+    // Must match CLIPMAP_LEVEL_COUNT in scene.glsl
+    public final static int LEVEL_COUNT = 4;
+    public final static int BRICK_SIZE = 16;
+
+    // Larger changes are merged into one box, testing every brick against each shape would cost more than it saves
+    private final static int MAX_CHANGE_BOX_COUNT = 32;
+
+    private int resolution;
+    private int brickCount;
+    private float voxelSize;
+
+    // Workers
+    private ForkJoinPool pool;
+    private ThreadLocal<Raymarcher> raymarchers;
+    private ConcurrentLinkedQueue<ClipmapBrick> completedBricks;
+
+    // Baked bricks, least recently used first
+    private Map<Long, ClipmapBrick> cache;
+
+    // Scene state, bricks of an older generation are discarded
+    private SceneSnapshot snapshot;
+    private int sceneVersion;
+    private volatile int generation;
+    private SceneChange latestChange;
+    private Set<Long> refiningBricks;
+
+    // Levels
+    private Vector3i[] origins;
+    private boolean[] valid;
+    private List<Map<Long, ClipmapBrick>> windows;
+    private Vector3i[] pendingOrigins;
+    private List<List<ClipmapBrick>> pendingBricks;
+    private int[] pendingCounts;
+    private Vector3i target;
+
+    public DistanceFieldClipmap(int resolution, float voxelSize, int threadCount, long cacheMaxBytes) {
+        assert(resolution % BRICK_SIZE == 0);
+        this.resolution = resolution;
+        this.brickCount = resolution / BRICK_SIZE;
+        this.voxelSize = voxelSize;
+
+        this.pool = new ForkJoinPool(threadCount);
+        this.raymarchers = ThreadLocal.withInitial(Raymarcher::new);
+        this.completedBricks = new ConcurrentLinkedQueue<>();
+
+        long cacheMaxEntries = cacheMaxBytes / (4L * BRICK_SIZE * BRICK_SIZE * BRICK_SIZE);
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, ClipmapBrick> eldest) {
+                return size() > cacheMaxEntries;
+            }
+        };
+        this.latestChange = new SceneChange(new float[0], new float[0]);
+        this.refiningBricks = new HashSet<>();
+
+        this.origins = new Vector3i[LEVEL_COUNT];
+        this.valid = new boolean[LEVEL_COUNT];
+        this.windows = new ArrayList<>();
+        this.pendingOrigins = new Vector3i[LEVEL_COUNT];
+        this.pendingBricks = new ArrayList<>();
+        this.pendingCounts = new int[LEVEL_COUNT];
+        for (int level = 0; level < LEVEL_COUNT; level++) {
+            this.origins[level] = new Vector3i();
+            this.pendingOrigins[level] = new Vector3i();
+            this.pendingBricks.add(new ArrayList<>());
+            this.windows.add(new HashMap<>());
+        }
+        this.target = new Vector3i();
+    }
+
+    public void cleanup() {
+        this.pool.shutdownNow();
+    }
+
+    public int getResolution() {
+        return this.resolution;
+    }
+
+    public float getVoxelSize(int level) {
+        return this.voxelSize * (float)(1 << level);
+    }
+
+    public void update(SceneManager sceneManager, AssetManager assetManager, Vector3f eye, ClipmapTexture texture) {
+        // Only the bricks near the changed shapes are rebaked, every level is rebuilt when an unbounded shape changes
+        if (this.snapshot == null || sceneManager.getVersion() != this.sceneVersion) {
+            SceneSnapshot previous = this.snapshot;
+            this.snapshot = new SceneSnapshot(sceneManager, assetManager);
+            if (previous == null || !applyChange(previous, this.snapshot, texture)) {
+                reset();
+            }
+            this.sceneVersion = sceneManager.getVersion();
+        }
+
+        // Collect bricks baked by the workers, changes made meanwhile are applied first
+        ClipmapBrick brick;
+        while ((brick = this.completedBricks.poll()) != null) {
+            if (brick.generation != this.generation) continue;
+            brick.completed = true;
+            catchUp(brick);
+            if (brick.refinement) {
+                refine(brick, texture);
+                continue;
+            }
+            if (!brick.loose) this.cache.put(brick.getKey(), brick);
+            this.pendingCounts[brick.level]--;
+        }
+
+        for (int level = 0; level < LEVEL_COUNT; level++) {
+            // A moving level keeps its old window until all new bricks are baked
+            if (!this.pendingBricks.get(level).isEmpty()) {
+                if (this.pendingCounts[level] > 0) continue;
+                commit(level, texture);
+            }
+
+            float brickExtent = getVoxelSize(level) * BRICK_SIZE;
+            this.target.set((int)Math.floor(eye.x / brickExtent), (int)Math.floor(eye.y / brickExtent),
+                    (int)Math.floor(eye.z / brickExtent)).sub(this.brickCount / 2, this.brickCount / 2, this.brickCount / 2);
+            if (this.valid[level] && this.target.equals(this.origins[level])) continue;
+
+            schedule(level);
+        }
+    }
+
+    public void getLevelUniforms(float[] levels) {
+        // xyz window origin in voxels, w voxel size or 0 if the level is not ready
+        for (int level = 0; level < LEVEL_COUNT; level++) {
+            Vector3i origin = this.origins[level];
+            levels[level * 4 + 0] = this.valid[level] ? (float)(origin.x * BRICK_SIZE) : 0.0f;
+            levels[level * 4 + 1] = this.valid[level] ? (float)(origin.y * BRICK_SIZE) : 0.0f;
+            levels[level * 4 + 2] = this.valid[level] ? (float)(origin.z * BRICK_SIZE) : 0.0f;
+            levels[level * 4 + 3] = this.valid[level] ? getVoxelSize(level) : 0.0f;
+        }
+    }
+
+    private void reset() {
+        this.generation++;
+        this.latestChange = new SceneChange(new float[0], new float[0]);
+        this.cache.clear();
+        this.completedBricks.clear();
+        this.refiningBricks.clear();
+        for (int level = 0; level < LEVEL_COUNT; level++) {
+            this.valid[level] = false;
+            this.pendingBricks.get(level).clear();
+            this.windows.get(level).clear();
+        }
+    }
+
+    private boolean applyChange(SceneSnapshot previous, SceneSnapshot snapshot, ClipmapTexture texture) {
+        // Shapes are compared slot by slot, a shape moved to another slot counts as a change of both
+        int count = Math.max(previous.count, snapshot.count);
+        float[] regions = new float[count * 6];
+        float[] bounds = new float[count * 6];
+        int regionCount = 0;
+        int boundCount = 0;
+        for (int i = 0; i < count; i++) {
+            boolean before = i < previous.count;
+            boolean after = i < snapshot.count;
+            if (before && after && previous.hasSameDistance(i, snapshot, i)) continue;
+
+            // Unbounded shapes change the distance everywhere
+            if ((before && !previous.bounded[i]) || (after && !snapshot.bounded[i])) return false;
+            if (before) union(regions, regionCount, previous.bounds, i, false);
+            if (after) {
+                union(regions, regionCount, snapshot.bounds, i, before);
+                System.arraycopy(snapshot.bounds, i * 6, bounds, boundCount * 6, 6);
+                boundCount++;
+            }
+            regionCount++;
+        }
+        if (regionCount == 0) return true;
+        if (regionCount > MAX_CHANGE_BOX_COUNT) {
+            for (int i = 1; i < regionCount; i++) union(regions, 0, regions, i, true);
+            for (int i = 1; i < boundCount; i++) union(bounds, 0, bounds, i, true);
+            regionCount = 1;
+            boundCount = Math.min(boundCount, 1);
+        }
+        SceneChange change = new SceneChange(Arrays.copyOf(regions, regionCount * 6), Arrays.copyOf(bounds, boundCount * 6));
+        this.latestChange.next = change;
+        this.latestChange = change;
+
+        // Windows keep their bricks, clamped to the new bounds, until the rebaked ones are ready
+        for (int level = 0; level < LEVEL_COUNT; level++) {
+            for (ClipmapBrick brick : this.windows.get(level).values()) {
+                if (catchUp(brick)) upload(brick, texture);
+                if (brick.loose) scheduleRefinement(brick);
+            }
+            // Bricks still being baked walk the whole chain once they are collected
+            for (ClipmapBrick brick : this.pendingBricks.get(level)) {
+                if (brick.completed) catchUp(brick);
+            }
+        }
+
+        // Bricks overlapping a change leave the cache, the others stay valid once clamped
+        Iterator<ClipmapBrick> iterator = this.cache.values().iterator();
+        while (iterator.hasNext()) {
+            ClipmapBrick brick = iterator.next();
+            catchUp(brick);
+            if (brick.loose) iterator.remove();
+        }
+        return true;
+    }
+
+    private void union(float[] bounds, int index, float[] source, int sourceIndex, boolean merge) {
+        for (int c = 0; c < 3; c++) {
+            float min = source[sourceIndex * 6 + c];
+            float max = source[sourceIndex * 6 + 3 + c];
+            bounds[index * 6 + c] = merge ? Math.min(bounds[index * 6 + c], min) : min;
+            bounds[index * 6 + 3 + c] = merge ? Math.max(bounds[index * 6 + 3 + c], max) : max;
+        }
+    }
+
+    private boolean catchUp(ClipmapBrick brick) {
+        // Clamping to the distance of the new bounds keeps the data a lower bound of the scene distance
+        boolean clamped = false;
+        for (SceneChange change = brick.change.next; change != null; change = change.next) {
+            for (int i = 0; i < change.regions.length; i += 6) {
+                if (getDistance(brick, change.regions, i) <= 0.0f) brick.loose = true;
+            }
+            for (int i = 0; i < change.bounds.length; i += 6) {
+                clamped |= clamp(brick, change.bounds, i);
+            }
+        }
+        brick.change = this.latestChange;
+        return clamped;
+    }
+
+    private boolean clamp(ClipmapBrick brick, float[] bounds, int offset) {
+        // Every sample is already closer than the box
+        if (getDistance(brick, bounds, offset) >= brick.maxDistance) return false;
+
+        float voxel = getVoxelSize(brick.level);
+        boolean clamped = false;
+        int i = 0;
+        for (int z = 0; z < BRICK_SIZE; z++) {
+            float dz = getAxisDistance((float)(brick.z * BRICK_SIZE + z) * voxel, bounds[offset + 2], bounds[offset + 5]);
+            for (int y = 0; y < BRICK_SIZE; y++) {
+                float dy = getAxisDistance((float)(brick.y * BRICK_SIZE + y) * voxel, bounds[offset + 1], bounds[offset + 4]);
+                for (int x = 0; x < BRICK_SIZE; x++, i++) {
+                    float dx = getAxisDistance((float)(brick.x * BRICK_SIZE + x) * voxel, bounds[offset], bounds[offset + 3]);
+                    float sd = (float)Math.sqrt(dx * dx + dy * dy + dz * dz);
+                    if (sd < brick.data[i]) {
+                        brick.data[i] = sd;
+                        clamped = true;
+                    }
+                }
+            }
+        }
+        if (clamped) brick.maxDistance = getMaxDistance(brick.data);
+        return clamped;
+    }
+
+    private float getDistance(ClipmapBrick brick, float[] bounds, int offset) {
+        // Between the samples of the brick and the box
+        float voxel = getVoxelSize(brick.level);
+        float extent = (float)(BRICK_SIZE - 1) * voxel;
+        float x = (float)(brick.x * BRICK_SIZE) * voxel;
+        float y = (float)(brick.y * BRICK_SIZE) * voxel;
+        float z = (float)(brick.z * BRICK_SIZE) * voxel;
+        float dx = Math.max(0.0f, Math.max(bounds[offset] - (x + extent), x - bounds[offset + 3]));
+        float dy = Math.max(0.0f, Math.max(bounds[offset + 1] - (y + extent), y - bounds[offset + 4]));
+        float dz = Math.max(0.0f, Math.max(bounds[offset + 2] - (z + extent), z - bounds[offset + 5]));
+        return (float)Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    private static float getAxisDistance(float p, float min, float max) {
+        return Math.max(0.0f, Math.max(min - p, p - max));
+    }
+
+    private static float getMaxDistance(float[] data) {
+        float max = Float.NEGATIVE_INFINITY;
+        for (float sd : data) {
+            max = Math.max(max, sd);
+        }
+        return max;
+    }
+
+    private boolean isInWindow(ClipmapBrick brick, Vector3i origin) {
+        return brick.x >= origin.x && brick.x < origin.x + this.brickCount
+                && brick.y >= origin.y && brick.y < origin.y + this.brickCount
+                && brick.z >= origin.z && brick.z < origin.z + this.brickCount;
+    }
+
+    private void scheduleRefinement(ClipmapBrick brick) {
+        // One rebake in flight per brick, a brick changed again meanwhile is rebaked once more
+        if (!this.refiningBricks.add(brick.getKey())) return;
+        ClipmapBrick refined = new ClipmapBrick(brick.level, brick.x, brick.y, brick.z, this.generation, true, this.latestChange);
+        SceneSnapshot snapshot = this.snapshot;
+        this.pool.execute(() -> bake(refined, snapshot));
+    }
+
+    private void refine(ClipmapBrick brick, ClipmapTexture texture) {
+        long key = brick.getKey();
+        this.refiningBricks.remove(key);
+        if (!brick.loose) this.cache.put(key, brick);
+
+        // The level may have moved away from the brick while it was baked
+        Map<Long, ClipmapBrick> window = this.windows.get(brick.level);
+        if (!window.containsKey(key)) return;
+        window.put(key, brick);
+        upload(brick, texture);
+        if (brick.loose) scheduleRefinement(brick);
+    }
+
+    private void upload(ClipmapBrick brick, ClipmapTexture texture) {
+        // Bricks take the toroidal slot of their world position
+        texture.upload(brick.level, Math.floorMod(brick.x, this.brickCount) * BRICK_SIZE,
+                Math.floorMod(brick.y, this.brickCount) * BRICK_SIZE,
+                Math.floorMod(brick.z, this.brickCount) * BRICK_SIZE, BRICK_SIZE, brick.data);
+    }
+
+    private void schedule(int level) {
+        Vector3i origin = this.origins[level];
+        List<ClipmapBrick> bricks = this.pendingBricks.get(level);
+        SceneSnapshot snapshot = this.snapshot;
+        int generation = this.generation;
+
+        this.pendingOrigins[level].set(this.target);
+        this.pendingCounts[level] = 0;
+        for (int z = this.target.z; z < this.target.z + this.brickCount; z++) {
+            for (int y = this.target.y; y < this.target.y + this.brickCount; y++) {
+                for (int x = this.target.x; x < this.target.x + this.brickCount; x++) {
+                    // Only the newly exposed slabs are evaluated
+                    if (this.valid[level] && x >= origin.x && x < origin.x + this.brickCount
+                            && y >= origin.y && y < origin.y + this.brickCount
+                            && z >= origin.z && z < origin.z + this.brickCount) continue;
+
+                    ClipmapBrick brick = this.cache.get(ClipmapBrick.getKey(level, x, y, z));
+                    if (brick == null) {
+                        ClipmapBrick baked = new ClipmapBrick(level, x, y, z, generation, false, this.latestChange);
+                        this.pendingCounts[level]++;
+                        this.pool.execute(() -> bake(baked, snapshot));
+                        brick = baked;
+                    }
+                    bricks.add(brick);
+                }
+            }
+        }
+    }
+
+    private void commit(int level, ClipmapTexture texture) {
+        // Entering bricks take the toroidal slots of the leaving ones
+        Vector3i origin = this.pendingOrigins[level];
+        Map<Long, ClipmapBrick> window = this.windows.get(level);
+        window.values().removeIf(brick -> !isInWindow(brick, origin));
+        for (ClipmapBrick brick : this.pendingBricks.get(level)) {
+            upload(brick, texture);
+            window.put(brick.getKey(), brick);
+            if (brick.loose) scheduleRefinement(brick);
+        }
+        this.pendingBricks.get(level).clear();
+        this.origins[level].set(origin);
+        this.valid[level] = true;
+    }
+
+    private void bake(ClipmapBrick brick, SceneSnapshot snapshot) {
+        if (brick.generation != this.generation) return;
+
+        Raymarcher raymarcher = this.raymarchers.get();
+        raymarcher.begin(snapshot);
+        float voxel = getVoxelSize(brick.level);
+        float[] data = new float[BRICK_SIZE * BRICK_SIZE * BRICK_SIZE];
+        int i = 0;
+        for (int z = 0; z < BRICK_SIZE; z++) {
+            float pz = (float)(brick.z * BRICK_SIZE + z) * voxel;
+            for (int y = 0; y < BRICK_SIZE; y++) {
+                float py = (float)(brick.y * BRICK_SIZE + y) * voxel;
+                for (int x = 0; x < BRICK_SIZE; x++) {
+                    data[i++] = raymarcher.map((float)(brick.x * BRICK_SIZE + x) * voxel, py, pz);
+                }
+            }
+        }
+        brick.data = data;
+        brick.maxDistance = getMaxDistance(data);
+        this.completedBricks.add(brick);
+    }
+}
\ No newline at end of file
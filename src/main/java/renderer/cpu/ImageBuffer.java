@@ -0,0 +1,41 @@
+package renderer.cpu;
+
+public class ImageBuffer {
+
+    private int width;
+    private int height;
+    private int channels;
+
+    private float[] data;
+
+    public ImageBuffer(int width, int height, int channels) {
+        this.width = width;
+        this.height = height;
+        this.channels = channels;
+        this.data = new float[width * height * channels];
+    }
+
+    public int getWidth() {
+        return this.width;
+    }
+
+    public int getHeight() {
+        return this.height;
+    }
+
+    public int getChannels() {
+        return this.channels;
+    }
+
+    public float[] getData() {
+        return this.data;
+    }
+
+    public float get(int x, int y, int channel) {
+        return this.data[(y * this.width + x) * this.channels + channel];
+    }
+
+    public void set(int x, int y, int channel, float value) {
+        this.data[(y * this.width + x) * this.channels + channel] = value;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,31 @@
+package renderer.cpu;
+
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+class RangeTask extends RecursiveAction {
+
+    private final static long serialVersionUID = 1L;
+
+    private final IntConsumer action;
+    private final int first;
+    private final int last;
+
+    RangeTask(IntConsumer action, int first, int last) {
+        this.action = action;
+        this.first = first;
+        this.last = last;
+    }
+
+    @Override
+    protected void compute() {
+        // Split until a single item remains, idle workers steal the other halves
+        if (this.last - this.first > 1) {
+            int middle = (this.first + this.last) >>> 1;
+            invokeAll(new RangeTask(this.action, this.first, middle),
+                    new RangeTask(this.action, middle, this.last));
+        } else {
+            this.action.accept(this.first);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,230 @@
+package renderer.cpu;
+
+import org.joml.Vector3f;
+import renderer.entity.Shape;
+
+class Raymarcher {
+
+    // Same constants as scene.glsl
+    final static int MAX_RAYMARCH_STEP = 512;
+    final static float MAX_DISTANCE = 300.0f;
+    final static float MIN_HIT_DISTANCE = 0.0001f;
+    final static float EPSILON = 0.005f;
+
+    private final static float SQRT2 = 1.41421356237f;
+
+    // Same sun as direct_lighting.glsl
+    private final static float SUN_DIR_X = -0.40824829f;
+    private final static float SUN_DIR_Y = 0.81649658f;
+    private final static float SUN_DIR_Z = 0.40824829f;
+    private final static float SUN_COLOR_R = 0.619095f;
+    private final static float SUN_COLOR_G = 0.562118f;
+    private final static float SUN_COLOR_B = 0.548401f;
+
+    private SceneSnapshot scene;
+    private final Vector3f p;
+    private long rayCount;
+
+    // Hit information (relevant if intersect)
+    float hitX, hitY, hitZ;
+    float normalX, normalY, normalZ;
+    float depth;
+    int shapeID;
+
+    // Light output
+    float lightR, lightG, lightB;
+
+    Raymarcher() {
+        this.p = new Vector3f();
+    }
+
+    void begin(SceneSnapshot scene) {
+        this.scene = scene;
+        this.rayCount = 0;
+    }
+
+    long getRayCount() {
+        return this.rayCount;
+    }
+
+    float map(float x, float y, float z) {
+        SceneSnapshot scene = this.scene;
+        float sd = MAX_DISTANCE;
+        for (int i = 0; i < scene.count; i++) {
+            sd = Math.min(sd, getDistance(scene, i, x, y, z));
+        }
+        return sd;
+    }
+
+    float mapShape(float x, float y, float z) {
+        SceneSnapshot scene = this.scene;
+        float sd = MAX_DISTANCE;
+        float s;
+        for (int i = 0; i < scene.count; i++) {
+            if ((s = getDistance(scene, i, x, y, z)) < sd) {
+                sd = s;
+                this.shapeID = i;
+            }
+        }
+        return sd;
+    }
+
+    private float getDistance(SceneSnapshot scene, int i, float x, float y, float z) {
+        // Same evaluation as sdSceneShape() in scene.glsl
+        x -= scene.positions[i * 3];
+        y -= scene.positions[i * 3 + 1];
+        z -= scene.positions[i * 3 + 2];
+        int count = scene.instanceCounts[i];
+        if (count == 0) {
+            this.p.set(x, y, z);
+            return scene.types[i].getDistance(this.p, scene.parameters[i]);
+        }
+
+        if (count == Shape.REPEATED) {
+            // Nearest cell and its neighbours toward p
+            float[] repetition = scene.repetitions;
+            float periodX = repetition[i * 6 + 0], periodY = repetition[i * 6 + 1], periodZ = repetition[i * 6 + 2];
+            float countX = repetition[i * 6 + 3], countY = repetition[i * 6 + 4], countZ = repetition[i * 6 + 5];
+            float cellX = getCell(x / periodX, countX), cellY = getCell(y / periodY, countY), cellZ = getCell(z / periodZ, countZ);
+            float qx = x - periodX * cellX, qy = y - periodY * cellY, qz = z - periodZ * cellZ;
+            float sideX = qx >= 0.0f ? 1.0f : -1.0f, sideY = qy >= 0.0f ? 1.0f : -1.0f, sideZ = qz >= 0.0f ? 1.0f : -1.0f;
+
+            // The other cells are a period further along one axis
+            float q2 = qx * qx + qy * qy + qz * qz;
+            float far = Math.min(q2 + periodX * (periodX + 2.0f * Math.abs(qx)),
+                    Math.min(q2 + periodY * (periodY + 2.0f * Math.abs(qy)), q2 + periodZ * (periodZ + 2.0f * Math.abs(qz))));
+            float sd = scene.radii[i] >= 0.0f ? (float)Math.sqrt(far) - scene.radii[i] : MAX_DISTANCE;
+            for (int n = 0; n < 8; n++) {
+                this.p.set(x - periodX * clampCell(cellX + sideX * (n & 1), countX),
+                        y - periodY * clampCell(cellY + sideY * ((n >> 1) & 1), countY),
+                        z - periodZ * clampCell(cellZ + sideZ * ((n >> 2) & 1), countZ));
+                sd = Math.min(sd, scene.types[i].getDistance(this.p, scene.parameters[i]));
+            }
+            return sd;
+        }
+
+        float sd = MAX_DISTANCE;
+        float radius = scene.radii[i];
+        float[] instances = scene.instances[i];
+        for (int j = 0; j < count; j++) {
+            int o = j * Shape.INSTANCE_FLOAT_COUNT;
+            float qx = x - instances[o], qy = y - instances[o + 1], qz = z - instances[o + 2];
+            float scale = instances[o + 3];
+            if (radius >= 0.0f && (float)Math.sqrt(qx * qx + qy * qy + qz * qz) - radius * scale >= sd) continue;
+
+            // Inverse rotation by the conjugate quaternion
+            float ux = -instances[o + 4], uy = -instances[o + 5], uz = -instances[o + 6], w = instances[o + 7];
+            float cx = uy * qz - uz * qy + w * qx;
+            float cy = uz * qx - ux * qz + w * qy;
+            float cz = ux * qy - uy * qx + w * qz;
+            this.p.set((qx + 2.0f * (uy * cz - uz * cy)) / scale,
+                    (qy + 2.0f * (uz * cx - ux * cz)) / scale,
+                    (qz + 2.0f * (ux * cy - uy * cx)) / scale);
+            sd = Math.min(sd, scene.types[i].getDistance(this.p, scene.parameters[i]) * scale);
+        }
+        return sd;
+    }
+
+    private static float getCell(float cell, float count) {
+        // Nearest cell, clamped to the grid when the repetition is finite
+        return clampCell((float)Math.floor(cell + 0.5f), count);
+    }
+
+    private static float clampCell(float index, float count) {
+        return count > 0.0f ? Math.max(0.0f, Math.min(count - 1.0f, index)) : index;
+    }
+
+    boolean intersectScene(float px, float py, float pz, float dx, float dy, float dz, float maxDepth) {
+        this.rayCount++;
+
+        boolean intersect = false;
+        this.depth = EPSILON;
+
+        float sd = MAX_DISTANCE;
+        for (int step = 0; step < MAX_RAYMARCH_STEP; step++) {
+            this.hitX = px + this.depth * dx;
+            this.hitY = py + this.depth * dy;
+            this.hitZ = pz + this.depth * dz;
+            sd = mapShape(this.hitX, this.hitY, this.hitZ);
+            if (sd < MIN_HIT_DISTANCE) {
+                intersect = true;
+                break;
+            }
+            this.depth += sd;
+            if (this.depth > maxDepth) {
+                this.depth = maxDepth;
+                break;
+            }
+        }
+
+        if (intersect) {
+            float nx = sd - map(this.hitX - EPSILON, this.hitY, this.hitZ);
+            float ny = sd - map(this.hitX, this.hitY - EPSILON, this.hitZ);
+            float nz = sd - map(this.hitX, this.hitY, this.hitZ - EPSILON);
+            float invLength = 1.0f / (float)Math.sqrt(nx * nx + ny * ny + nz * nz);
+            this.normalX = nx * invLength;
+            this.normalY = ny * invLength;
+            this.normalZ = nz * invLength;
+        }
+
+        return intersect;
+    }
+
+    float hardShadow(float px, float py, float pz, float dx, float dy, float dz, float mint, float maxt) {
+        this.rayCount++;
+        for (float t = mint; t < maxt;) {
+            float sd = map(px + dx * t, py + dy * t, pz + dz * t);
+            if (sd < MIN_HIT_DISTANCE) return 0.0f;
+            t += sd;
+        }
+        return 1.0f;
+    }
+
+    void directLight(float px, float py, float pz, float nx, float ny, float nz) {
+        float sunDot = Math.max(0.0f, SUN_DIR_X * nx + SUN_DIR_Y * ny + SUN_DIR_Z * nz);
+        float sunShadow = 1.0f;
+        if (sunDot > 0.0f) {
+            sunShadow = hardShadow(px + nx * EPSILON, py + ny * EPSILON, pz + nz * EPSILON,
+                    SUN_DIR_X, SUN_DIR_Y, SUN_DIR_Z, EPSILON, MAX_DISTANCE);
+        }
+        float intensity = sunDot * sunShadow * 2.0f;
+        this.lightR = intensity * SUN_COLOR_R;
+        this.lightG = intensity * SUN_COLOR_G;
+        this.lightB = intensity * SUN_COLOR_B;
+    }
+
+    void indirectLight(float px, float py, float pz, float nx, float ny, float nz, float seed) {
+        // Single bounce, same random direction as indirect_light_pass.frag
+        px += nx * EPSILON;
+        py += ny * EPSILON;
+        pz += nz * EPSILON;
+
+        float rx = nrand(px + seed, py + seed) * 2.0f - 1.0f;
+        float ry = nrand(py + seed, pz + seed) * 2.0f - 1.0f;
+        float rz = nrand(pz + seed, px + seed) * 2.0f - 1.0f;
+        float dx = nx * SQRT2 + rx;
+        float dy = ny * SQRT2 + ry;
+        float dz = nz * SQRT2 + rz;
+        float invLength = 1.0f / (float)Math.sqrt(dx * dx + dy * dy + dz * dz);
+        dx *= invLength;
+        dy *= invLength;
+        dz *= invLength;
+
+        if (intersectScene(px, py, pz, dx, dy, dz, MAX_DISTANCE)) {
+            int id = this.shapeID;
+            directLight(this.hitX, this.hitY, this.hitZ, this.normalX, this.normalY, this.normalZ);
+            this.lightR *= this.scene.albedos[id * 3 + 0];
+            this.lightG *= this.scene.albedos[id * 3 + 1];
+            this.lightB *= this.scene.albedos[id * 3 + 2];
+        } else {
+            this.lightR = SUN_COLOR_R * SUN_COLOR_R;
+            this.lightG = SUN_COLOR_G * SUN_COLOR_G;
+            this.lightB = SUN_COLOR_B * SUN_COLOR_B;
+        }
+    }
+
+    private static float nrand(float x, float y) {
+        double v = Math.sin(x * 12.9898 + y * 78.233) * 43758.5453;
+        return (float)(v - Math.floor(v));
+    }
+}
\ No newline at end of file
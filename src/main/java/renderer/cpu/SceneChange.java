@@ -0,0 +1,16 @@
+package renderer.cpu;
+
+class SceneChange {
+
+    // Union of the old and new bounds of each changed shape, bricks overlapping them are rebaked
+    final float[] regions;
+    // New bounds of the changed shapes, the other bricks are clamped to their distance
+    final float[] bounds;
+    // Later change, bricks baked before it catch up with the whole chain
+    SceneChange next;
+
+    SceneChange(float[] regions, float[] bounds) {
+        this.regions = regions;
+        this.bounds = bounds;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,105 @@
+package renderer.cpu;
+
+import org.joml.Vector3f;
+import renderer.RenderShapeParameters;
+import renderer.RenderShapeType;
+import renderer.asset.AssetManager;
+import renderer.asset.Material;
+import renderer.entity.SceneManager;
+import renderer.entity.Shape;
+
+import java.util.Arrays;
+
+class SceneSnapshot {
+
+    int count;
+    RenderShapeType[] types;
+    RenderShapeParameters[] parameters;
+    float[] positions;
+    float[] albedos;
+    int[] materialIDs;
+
+    // Instances, see Shape for the layout
+    int[] instanceCounts;
+    float[][] instances;
+    float[] repetitions;
+    float[] radii;
+
+    // World bounds, min then max, only valid where bounded
+    float[] bounds;
+    boolean[] bounded;
+
+    SceneSnapshot(SceneManager sceneManager, AssetManager assetManager) {
+        int capacity = sceneManager.getShapes().size();
+        this.types = new RenderShapeType[capacity];
+        this.parameters = new RenderShapeParameters[capacity];
+        this.positions = new float[capacity * 3];
+        this.albedos = new float[capacity * 3];
+        this.materialIDs = new int[capacity];
+        this.instanceCounts = new int[capacity];
+        this.instances = new float[capacity][];
+        this.repetitions = new float[capacity * 6];
+        this.radii = new float[capacity];
+        this.bounds = new float[capacity * 6];
+        this.bounded = new boolean[capacity];
+
+        this.count = 0;
+        Vector3f position = new Vector3f();
+        Vector3f albedo = new Vector3f();
+        Vector3f min = new Vector3f();
+        Vector3f max = new Vector3f();
+        for (Shape shape : sceneManager.getShapes()) {
+            // Untyped shapes cannot be evaluated
+            if (shape.getType() == null) continue;
+
+            // Same fallback as the GPU : material 0 when no material is assigned
+            Material material = shape.getMaterial();
+            if (material == null) material = assetManager.getMaterial(0);
+
+            int i = this.count++;
+            this.types[i] = shape.getType();
+            this.parameters[i] = shape.getParameters(new RenderShapeParameters());
+            shape.getPosition(position);
+            this.positions[i * 3 + 0] = position.x;
+            this.positions[i * 3 + 1] = position.y;
+            this.positions[i * 3 + 2] = position.z;
+            if (material != null) material.getAlbedo(albedo);
+            else albedo.set(1.0f);
+            this.albedos[i * 3 + 0] = albedo.x;
+            this.albedos[i * 3 + 1] = albedo.y;
+            this.albedos[i * 3 + 2] = albedo.z;
+            this.materialIDs[i] = material == null ? 0 : material.getIndex();
+            this.instanceCounts[i] = shape.getInstanceCount();
+            if (shape.getInstanceCount() > 0) {
+                this.instances[i] = Arrays.copyOf(shape.getInstances(), shape.getInstanceCount() * Shape.INSTANCE_FLOAT_COUNT);
+            }
+            if (shape.getInstanceCount() == Shape.REPEATED) {
+                this.repetitions[i * 6 + 0] = shape.getRepetitionPeriod().x;
+                this.repetitions[i * 6 + 1] = shape.getRepetitionPeriod().y;
+                this.repetitions[i * 6 + 2] = shape.getRepetitionPeriod().z;
+                this.repetitions[i * 6 + 3] = shape.getRepetitionCount().x;
+                this.repetitions[i * 6 + 4] = shape.getRepetitionCount().y;
+                this.repetitions[i * 6 + 5] = shape.getRepetitionCount().z;
+            }
+            this.radii[i] = shape.getTemplateRadius();
+            this.bounded[i] = shape.getWorldBounds(min, max);
+            if (this.bounded[i]) {
+                this.bounds[i * 6 + 0] = min.x;
+                this.bounds[i * 6 + 1] = min.y;
+                this.bounds[i * 6 + 2] = min.z;
+                this.bounds[i * 6 + 3] = max.x;
+                this.bounds[i * 6 + 4] = max.y;
+                this.bounds[i * 6 + 5] = max.z;
+            }
+        }
+    }
+
+    boolean hasSameDistance(int i, SceneSnapshot other, int j) {
+        // Materials do not change the distance field
+        if (this.types[i] != other.types[j] || this.instanceCounts[i] != other.instanceCounts[j]) return false;
+        if (!this.parameters[i].f0.equals(other.parameters[j].f0) || !this.parameters[i].f1.equals(other.parameters[j].f1)) return false;
+        return Arrays.equals(this.positions, i * 3, i * 3 + 3, other.positions, j * 3, j * 3 + 3)
+                && Arrays.equals(this.repetitions, i * 6, i * 6 + 6, other.repetitions, j * 6, j * 6 + 6)
+                && Arrays.equals(this.instances[i], other.instances[j]);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,285 @@
+package renderer.entity;
+
+import org.joml.Vector3f;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+
+public class BVH {
+    public final static int BYTE_COUNT = 32;
+
+    // Refitted trees are rebuilt once the root grows past this factor
+    private final static float REBUILD_AREA_FACTOR = 2.0f;
+
+    // Flattened nodes : leaves hold a shape index, internal nodes the index of
+    // their first child (the second child directly follows it)
+    private float[] bounds;
+    private int[] indices;
+    private int[] counts;
+    private int[] parents;
+    private int nodeCount;
+    private int capacity;
+
+    // Shapes without finite bounds are stored as leaves in front of the root
+    private int unboundedCount;
+    // Leaves of removed shapes, skipped by the traversal until the next build
+    private int emptyLeafCount;
+
+    private int[] leafOfShape;
+    private int[] order;
+    private float[] primitiveBounds;
+    private BitSet dirtyNodes;
+    private float builtRootArea;
+
+    private final Vector3f min;
+    private final Vector3f max;
+
+    public BVH() {
+        this.capacity = 0;
+        this.nodeCount = 0;
+        this.unboundedCount = 0;
+        this.leafOfShape = new int[0];
+        this.dirtyNodes = new BitSet();
+        this.min = new Vector3f();
+        this.max = new Vector3f();
+    }
+
+    public int getNodeCount() {
+        return this.nodeCount;
+    }
+
+    public int getUnboundedCount() {
+        return this.unboundedCount;
+    }
+
+    public BitSet getDirtyNodes() {
+        return this.dirtyNodes;
+    }
+
+    public void build(Collection<Shape> shapes) {
+        int shapeCount = shapes.size();
+        int maxIndex = 0;
+        for (Shape shape : shapes) {
+            maxIndex = Math.max(maxIndex, shape.getIndex() + 1);
+        }
+        ensureCapacity(Math.max(1, 2 * shapeCount), maxIndex);
+
+        // Sort out unbounded shapes
+        this.unboundedCount = 0;
+        int boundedCount = 0;
+        for (Shape shape : shapes) {
+            if (shape.getWorldBounds(this.min, this.max)) {
+                int i = boundedCount++;
+                this.order[i] = shape.getIndex();
+                this.primitiveBounds[i * 6 + 0] = this.min.x;
+                this.primitiveBounds[i * 6 + 1] = this.min.y;
+                this.primitiveBounds[i * 6 + 2] = this.min.z;
+                this.primitiveBounds[i * 6 + 3] = this.max.x;
+                this.primitiveBounds[i * 6 + 4] = this.max.y;
+                this.primitiveBounds[i * 6 + 5] = this.max.z;
+            } else {
+                int node = this.unboundedCount++;
+                setLeaf(node, shape.getIndex());
+                this.parents[node] = -1;
+            }
+        }
+        this.nodeCount = this.unboundedCount;
+        this.emptyLeafCount = 0;
+
+        // Build bounded tree
+        if (boundedCount > 0) {
+            int root = this.nodeCount++;
+            this.parents[root] = -1;
+            buildNode(root, 0, boundedCount);
+            this.builtRootArea = area(root);
+        }
+
+        this.dirtyNodes.clear();
+        this.dirtyNodes.set(0, this.nodeCount);
+    }
+
+    public boolean refit(Shape shape) {
+        int index = shape.getIndex();
+        int node = index < this.leafOfShape.length ? this.leafOfShape[index] : -1;
+        boolean bounded = shape.getWorldBounds(this.min, this.max);
+
+        // Topology changed, a rebuild is required
+        if (node < 0 || bounded != (node >= this.unboundedCount)) return false;
+        if (!bounded) return true;
+
+        // Update leaf and propagate to the root
+        setBounds(node, this.min, this.max);
+        propagate(node);
+
+        // Refitting degrades the tree, ask for a rebuild when it is too loose
+        return area(this.unboundedCount) <= this.builtRootArea * REBUILD_AREA_FACTOR;
+    }
+
+    public boolean remove(int index, int movedIndex) {
+        // Swap-remove of the scene, the shape at movedIndex took the freed slot
+        int node = index < this.leafOfShape.length ? this.leafOfShape[index] : -1;
+        int movedNode = movedIndex < this.leafOfShape.length ? this.leafOfShape[movedIndex] : -1;
+
+        // Unbounded leaves are always evaluated, they cannot be emptied
+        if (node < this.unboundedCount || movedNode < 0) return false;
+
+        // Empty bounds are farther than any shape, the leaf is never evaluated
+        this.min.set(Float.MAX_VALUE);
+        this.max.set(-Float.MAX_VALUE);
+        setBounds(node, this.min, this.max);
+        propagate(node);
+        this.leafOfShape[index] = -1;
+        this.emptyLeafCount++;
+
+        // Re-key the moved leaf to its new slot
+        if (movedIndex != index) {
+            this.indices[movedNode] = index;
+            this.leafOfShape[index] = movedNode;
+            this.leafOfShape[movedIndex] = -1;
+            this.dirtyNodes.set(movedNode);
+        }
+
+        // Empty leaves still take space and refits, ask for a rebuild when they are the majority
+        int leafCount = (this.nodeCount - this.unboundedCount + 1) / 2;
+        return this.emptyLeafCount * 2 <= leafCount;
+    }
+
+    public void writeNode(int node, ByteBuffer buffer) {
+        int bufferStart = node * BYTE_COUNT;
+        // Min
+        buffer.putFloat(bufferStart + 0, this.bounds[node * 6 + 0]);
+        buffer.putFloat(bufferStart + 4, this.bounds[node * 6 + 1]);
+        buffer.putFloat(bufferStart + 8, this.bounds[node * 6 + 2]);
+        // Index
+        buffer.putInt(bufferStart + 12, this.indices[node]);
+        // Max
+        buffer.putFloat(bufferStart + 16, this.bounds[node * 6 + 3]);
+        buffer.putFloat(bufferStart + 20, this.bounds[node * 6 + 4]);
+        buffer.putFloat(bufferStart + 24, this.bounds[node * 6 + 5]);
+        // Count
+        buffer.putInt(bufferStart + 28, this.counts[node]);
+    }
+
+    private void propagate(int node) {
+        this.dirtyNodes.set(node);
+        node = this.parents[node];
+        while (node >= 0) {
+            int left = this.indices[node];
+            union(node, left, left + 1);
+            this.dirtyNodes.set(node);
+            node = this.parents[node];
+        }
+    }
+
+    private void buildNode(int node, int start, int end) {
+        if (end - start == 1) {
+            int b = start * 6;
+            this.min.set(this.primitiveBounds[b], this.primitiveBounds[b + 1], this.primitiveBounds[b + 2]);
+            this.max.set(this.primitiveBounds[b + 3], this.primitiveBounds[b + 4], this.primitiveBounds[b + 5]);
+            setLeaf(node, this.order[start]);
+            return;
+        }
+
+        // Median split along the longest axis of the centroids
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, minZ = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE, maxZ = -Float.MAX_VALUE;
+        for (int i = start; i < end; i++) {
+            minX = Math.min(minX, centroid(i, 0)); maxX = Math.max(maxX, centroid(i, 0));
+            minY = Math.min(minY, centroid(i, 1)); maxY = Math.max(maxY, centroid(i, 1));
+            minZ = Math.min(minZ, centroid(i, 2)); maxZ = Math.max(maxZ, centroid(i, 2));
+        }
+        float sizeX = maxX - minX, sizeY = maxY - minY, sizeZ = maxZ - minZ;
+        int axis = sizeX >= sizeY && sizeX >= sizeZ ? 0 : (sizeY >= sizeZ ? 1 : 2);
+        int middle = (start + end) >>> 1;
+        select(start, end - 1, middle, axis);
+
+        int left = this.nodeCount;
+        this.nodeCount += 2;
+        this.indices[node] = left;
+        this.counts[node] = 0;
+        this.parents[left] = node;
+        this.parents[left + 1] = node;
+        buildNode(left, start, middle);
+        buildNode(left + 1, middle, end);
+        union(node, left, left + 1);
+    }
+
+    private void select(int low, int high, int k, int axis) {
+        // Quickselect, the k-th centroid ends up at its sorted position
+        while (low < high) {
+            float pivot = centroid((low + high) >>> 1, axis);
+            int i = low, j = high;
+            while (i <= j) {
+                while (centroid(i, axis) < pivot) i++;
+                while (centroid(j, axis) > pivot) j--;
+                if (i <= j) swap(i++, j--);
+            }
+            if (k <= j) high = j;
+            else if (k >= i) low = i;
+            else return;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int index = this.order[a];
+        this.order[a] = this.order[b];
+        this.order[b] = index;
+        for (int c = 0; c < 6; c++) {
+            float bound = this.primitiveBounds[a * 6 + c];
+            this.primitiveBounds[a * 6 + c] = this.primitiveBounds[b * 6 + c];
+            this.primitiveBounds[b * 6 + c] = bound;
+        }
+    }
+
+    private float centroid(int primitive, int axis) {
+        return (this.primitiveBounds[primitive * 6 + axis] + this.primitiveBounds[primitive * 6 + 3 + axis]) * 0.5f;
+    }
+
+    private void setLeaf(int node, int shapeIndex) {
+        this.indices[node] = shapeIndex;
+        this.counts[node] = 1;
+        this.leafOfShape[shapeIndex] = node;
+        setBounds(node, this.min, this.max);
+    }
+
+    private void setBounds(int node, Vector3f min, Vector3f max) {
+        this.bounds[node * 6 + 0] = min.x;
+        this.bounds[node * 6 + 1] = min.y;
+        this.bounds[node * 6 + 2] = min.z;
+        this.bounds[node * 6 + 3] = max.x;
+        this.bounds[node * 6 + 4] = max.y;
+        this.bounds[node * 6 + 5] = max.z;
+    }
+
+    private void union(int node, int a, int b) {
+        for (int c = 0; c < 3; c++) {
+            this.bounds[node * 6 + c] = Math.min(this.bounds[a * 6 + c], this.bounds[b * 6 + c]);
+            this.bounds[node * 6 + 3 + c] = Math.max(this.bounds[a * 6 + 3 + c], this.bounds[b * 6 + 3 + c]);
+        }
+    }
+
+    private float area(int node) {
+        float x = this.bounds[node * 6 + 3] - this.bounds[node * 6 + 0];
+        float y = this.bounds[node * 6 + 4] - this.bounds[node * 6 + 1];
+        float z = this.bounds[node * 6 + 5] - this.bounds[node * 6 + 2];
+        return 2.0f * (x * y + y * z + z * x);
+    }
+
+    private void ensureCapacity(int nodeCapacity, int shapeCapacity) {
+        if (nodeCapacity > this.capacity) {
+            this.capacity = nodeCapacity;
+            this.bounds = new float[nodeCapacity * 6];
+            this.indices = new int[nodeCapacity];
+            this.counts = new int[nodeCapacity];
+            this.parents = new int[nodeCapacity];
+            this.order = new int[nodeCapacity];
+            this.primitiveBounds = new float[nodeCapacity * 6];
+        }
+        if (shapeCapacity > this.leafOfShape.length) {
+            this.leafOfShape = new int[shapeCapacity];
+        }
+        Arrays.fill(this.leafOfShape, -1);
+    }
+}
\ No newline at end of file
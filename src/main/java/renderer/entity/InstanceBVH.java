@@ -0,0 +1,118 @@
+package renderer.entity;
+
+import java.nio.ByteBuffer;
+
+// Tree over the instances of a shape, stored after the transforms with the BVH node layout
+class InstanceBVH {
+
+    private float[] bounds;
+    private int[] order;
+    private float[] centroids;
+    private float[] union;
+    private int nodeCount;
+
+    InstanceBVH() {
+        this.bounds = new float[0];
+        this.order = new int[0];
+        this.centroids = new float[0];
+        this.union = new float[6];
+    }
+
+    static int getNodeCount(int instanceCount) {
+        // A single instance is evaluated directly
+        return instanceCount > 1 ? 2 * instanceCount - 1 : 0;
+    }
+
+    void write(float[] instances, int instanceCount, float radius, ByteBuffer buffer, int bufferStart) {
+        if (this.order.length < instanceCount) {
+            this.bounds = new float[instanceCount * 6];
+            this.order = new int[instanceCount];
+            this.centroids = new float[instanceCount * 3];
+        }
+
+        // Bounding sphere of each rotated and scaled template
+        for (int i = 0; i < instanceCount; i++) {
+            int o = i * Shape.INSTANCE_FLOAT_COUNT;
+            float extent = radius * instances[o + 3];
+            for (int c = 0; c < 3; c++) {
+                this.bounds[i * 6 + c] = instances[o + c] - extent;
+                this.bounds[i * 6 + 3 + c] = instances[o + c] + extent;
+                this.centroids[i * 3 + c] = instances[o + c];
+            }
+            this.order[i] = i;
+        }
+
+        this.nodeCount = 1;
+        buildNode(0, 0, instanceCount, buffer, bufferStart);
+    }
+
+    private void buildNode(int node, int start, int end, ByteBuffer buffer, int bufferStart) {
+        int nodeStart = bufferStart + node * BVH.BYTE_COUNT;
+        if (end - start == 1) {
+            int instance = this.order[start];
+            writeNode(buffer, nodeStart, this.bounds, instance * 6, instance, 1);
+            return;
+        }
+
+        // Median split along the longest axis of the instance positions
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, minZ = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE, maxZ = -Float.MAX_VALUE;
+        for (int i = start; i < end; i++) {
+            int c = this.order[i] * 3;
+            minX = Math.min(minX, this.centroids[c]); maxX = Math.max(maxX, this.centroids[c]);
+            minY = Math.min(minY, this.centroids[c + 1]); maxY = Math.max(maxY, this.centroids[c + 1]);
+            minZ = Math.min(minZ, this.centroids[c + 2]); maxZ = Math.max(maxZ, this.centroids[c + 2]);
+        }
+        float sizeX = maxX - minX, sizeY = maxY - minY, sizeZ = maxZ - minZ;
+        int axis = sizeX >= sizeY && sizeX >= sizeZ ? 0 : (sizeY >= sizeZ ? 1 : 2);
+        int middle = (start + end) >>> 1;
+        select(start, end - 1, middle, axis);
+
+        int left = this.nodeCount;
+        this.nodeCount += 2;
+        buildNode(left, start, middle, buffer, bufferStart);
+        buildNode(left + 1, middle, end, buffer, bufferStart);
+
+        // Union of the children, read back from the buffer
+        float[] union = this.union;
+        int leftStart = bufferStart + left * BVH.BYTE_COUNT;
+        int rightStart = leftStart + BVH.BYTE_COUNT;
+        for (int c = 0; c < 3; c++) {
+            union[c] = Math.min(buffer.getFloat(leftStart + c * 4), buffer.getFloat(rightStart + c * 4));
+            union[3 + c] = Math.max(buffer.getFloat(leftStart + 16 + c * 4), buffer.getFloat(rightStart + 16 + c * 4));
+        }
+        writeNode(buffer, nodeStart, union, 0, left, 0);
+    }
+
+    private void select(int low, int high, int k, int axis) {
+        // Quickselect, the k-th position ends up at its sorted place
+        while (low < high) {
+            float pivot = this.centroids[this.order[(low + high) >>> 1] * 3 + axis];
+            int i = low, j = high;
+            while (i <= j) {
+                while (this.centroids[this.order[i] * 3 + axis] < pivot) i++;
+                while (this.centroids[this.order[j] * 3 + axis] > pivot) j--;
+                if (i <= j) {
+                    int instance = this.order[i];
+                    this.order[i++] = this.order[j];
+                    this.order[j--] = instance;
+                }
+            }
+            if (k <= j) high = j;
+            else if (k >= i) low = i;
+            else return;
+        }
+    }
+
+    private static void writeNode(ByteBuffer buffer, int nodeStart, float[] bounds, int offset, int index, int count) {
+        // Same layout as BVHNode in scene.glsl, indices are relative to the instance and node ranges
+        buffer.putFloat(nodeStart + 0, bounds[offset]);
+        buffer.putFloat(nodeStart + 4, bounds[offset + 1]);
+        buffer.putFloat(nodeStart + 8, bounds[offset + 2]);
+        buffer.putInt(nodeStart + 12, index);
+        buffer.putFloat(nodeStart + 16, bounds[offset + 3]);
+        buffer.putFloat(nodeStart + 20, bounds[offset + 4]);
+        buffer.putFloat(nodeStart + 24, bounds[offset + 5]);
+        buffer.putInt(nodeStart + 28, count);
+    }
+}
\ No newline at end of file
@@ -1,36 +1,246 @@
-package renderer.entity;
-
-import renderer.memory.MemoryManager;
-
-import java.util.HashMap;
-import java.util.Map;
-
-public class SceneManager {
-    private MemoryManager memoryManager;
-    private Map<Integer, Shape> shapes;
-    private int nextShapeID;
-    private Camera camera;
-
-    public SceneManager(MemoryManager memoryManager) {
-        this.memoryManager = memoryManager;
-        this.shapes = new HashMap<>();
-        this.nextShapeID = 0;
-        this.camera = new Camera();
-    }
-
-    public Shape createShape() {
-        Shape shape = new Shape(this, this.nextShapeID++);
-        this.shapes.put(shape.getIndex(), shape);
-        this.memoryManager.updateShape(shape);
-        this.memoryManager.setShapeCount(this.shapes.size());
-        return shape;
-    }
-
-    public void updateShape(Shape shape) {
-        this.memoryManager.updateShape(shape);
-    }
-
-    public Camera getActiveCamera() {
-        return this.camera;
-    }
+package renderer.entity;
+
+import renderer.memory.MemoryManager;
+import renderer.memory.StructArena;
+
+import renderer.asset.Material;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+
+public class SceneManager {
+    private MemoryManager memoryManager;
+    // Dense, the index of a shape is its slot in the shape arena
+    private List<Shape> shapes;
+    private StructArena shapeArena;
+    private Camera camera;
+    private int version;
+    // Only changed by shapes, positions and parameters, materials do not change distances
+    private int geometryVersion;
+
+    // Instance storage ranges, the ones left by growing shapes are reclaimed by compaction
+    private int instanceEnd;
+    private int instanceWaste;
+    private InstanceBVH instanceBVH;
+
+    // Acceleration structure
+    private BVH bvh;
+    private BitSet movedShapes;
+    private boolean rebuildBVH;
+
+    // Screen tile lists
+    private TileCuller tileCuller;
+    private boolean tileListsDirty;
+    private int tileListsWidth;
+    private int tileListsHeight;
+
+    public SceneManager(MemoryManager memoryManager) {
+        this.memoryManager = memoryManager;
+        this.shapes = new ArrayList<>();
+        this.shapeArena = memoryManager != null ? memoryManager.getShapeArena()
+                : new StructArena(Shape.BYTE_COUNT, MemoryManager.INITIAL_SHAPE_CAPACITY);
+        this.camera = new Camera();
+        this.instanceBVH = new InstanceBVH();
+        this.bvh = new BVH();
+        this.movedShapes = new BitSet();
+        this.rebuildBVH = true;
+        this.tileCuller = new TileCuller();
+        this.tileListsDirty = true;
+    }
+
+    public SceneManager() {
+        // Headless scene, nothing is uploaded to the GPU
+        this(null);
+    }
+
+    public Shape createShape() {
+        Shape shape = new Shape(this, this.shapes.size());
+        this.shapes.add(shape);
+        // Slots are reused after removals
+        this.shapeArena.ensureCapacity(this.shapes.size());
+        this.shapeArena.clearSlot(shape.getIndex());
+        this.rebuildBVH = true;
+        this.tileListsDirty = true;
+        this.version++;
+        this.geometryVersion++;
+        if (this.memoryManager != null) {
+            this.memoryManager.setShapeCount(this.shapes.size());
+        }
+        return shape;
+    }
+
+    public void removeShape(Shape shape) {
+        int index = shape.getIndex();
+        if (index < 0 || index >= this.shapes.size() || this.shapes.get(index) != shape) {
+            throw new IllegalArgumentException("shape is not part of the scene");
+        }
+
+        // Swap-remove, the last shape takes the freed slot
+        int lastIndex = this.shapes.size() - 1;
+        Shape last = this.shapes.remove(lastIndex);
+        if (last != shape) {
+            this.shapeArena.copySlot(last.getIndex(), index);
+            this.shapes.set(index, last);
+            last.setIndex(index);
+        }
+        shape.setIndex(-1);
+        this.instanceWaste += shape.getInstanceCapacity();
+
+        // Leaves are keyed by slot, the moved shape's leaf is re-keyed and the removed one emptied
+        if (!this.rebuildBVH && !this.bvh.remove(index, lastIndex)) {
+            this.rebuildBVH = true;
+        }
+        // A pending refit follows the moved shape
+        this.movedShapes.set(index, index != lastIndex && this.movedShapes.get(lastIndex));
+        this.movedShapes.clear(lastIndex);
+        this.tileListsDirty = true;
+        this.version++;
+        this.geometryVersion++;
+        if (this.memoryManager != null) {
+            this.memoryManager.setShapeCount(this.shapes.size());
+        }
+    }
+
+    public void removeMaterial(Material removed, Material moved) {
+        // Shapes of the removed material fall back to material 0, the moved one changed slot
+        for (Shape shape : this.shapes) {
+            if (shape.getMaterial() == removed) {
+                shape.setMaterial(null);
+            } else if (moved != null && shape.getMaterial() == moved) {
+                shape.setMaterial(moved);
+            }
+        }
+    }
+
+    public void updateShape(Shape shape) {
+        if (shape.getIndex() < 0) {
+            throw new IllegalStateException("shape was removed");
+        }
+        this.movedShapes.set(shape.getIndex());
+        this.tileListsDirty = true;
+        this.version++;
+        this.geometryVersion++;
+        this.shapeArena.markDirty(shape.getIndex());
+    }
+
+    public void updateMaterial(Shape shape) {
+        if (shape.getIndex() < 0) {
+            throw new IllegalStateException("shape was removed");
+        }
+        // Bounds are unchanged, nothing to refit or cull again
+        this.version++;
+        this.shapeArena.markDirty(shape.getIndex());
+    }
+
+    public void updateInstances(Shape shape) {
+        if (shape.getIndex() < 0) {
+            throw new IllegalStateException("shape was removed");
+        }
+
+        // A shape keeps its range while its instances fit
+        int slotCount = shape.getInstanceSlotCount();
+        if (slotCount > shape.getInstanceCapacity()) {
+            this.instanceWaste += shape.getInstanceCapacity();
+            shape.setInstanceRange(this.instanceEnd, slotCount);
+            this.instanceEnd += slotCount;
+            if (this.instanceWaste > this.instanceEnd / 2) {
+                compactInstances();
+            }
+        }
+
+        updateShape(shape);
+        if (this.memoryManager != null) {
+            this.memoryManager.updateInstances(shape);
+        }
+    }
+
+    private void compactInstances() {
+        this.instanceEnd = 0;
+        this.instanceWaste = 0;
+        for (Shape shape : this.shapes) {
+            if (shape.getInstanceCapacity() == 0) continue;
+            shape.setInstanceRange(this.instanceEnd, shape.getInstanceCapacity());
+            this.instanceEnd += shape.getInstanceCapacity();
+            this.shapeArena.markDirty(shape.getIndex());
+            if (this.memoryManager != null) {
+                this.memoryManager.updateInstances(shape);
+            }
+        }
+    }
+
+    public void updateAccelerationStructure() {
+        // Refit moved shapes, rebuild when the topology changed
+        if (!this.rebuildBVH) {
+            for (int i = this.movedShapes.nextSetBit(0); i >= 0; i = this.movedShapes.nextSetBit(i + 1)) {
+                if (!this.bvh.refit(this.shapes.get(i))) {
+                    this.rebuildBVH = true;
+                    break;
+                }
+            }
+        }
+        if (this.rebuildBVH) {
+            this.bvh.build(this.shapes);
+            this.rebuildBVH = false;
+        }
+        this.movedShapes.clear();
+
+        if (this.memoryManager != null) {
+            this.memoryManager.updateBVH(this.bvh);
+        }
+    }
+
+    public void updateTileLists(int width, int height) {
+        // Lists only change with the camera, the shapes or the resolution
+        if (!this.tileListsDirty && !this.camera.hasMoved()
+                && width == this.tileListsWidth && height == this.tileListsHeight) return;
+
+        this.tileCuller.cull(this.shapes, this.camera.getViewProjectionMatrix(), width, height);
+        this.tileListsDirty = false;
+        this.tileListsWidth = width;
+        this.tileListsHeight = height;
+
+        if (this.memoryManager != null) {
+            this.memoryManager.updateTileLists(this.tileCuller);
+        }
+    }
+
+    public TileCuller getTileCuller() {
+        return this.tileCuller;
+    }
+
+    InstanceBVH getInstanceBVH() {
+        return this.instanceBVH;
+    }
+
+    public BVH getBVH() {
+        return this.bvh;
+    }
+
+    public int getVersion() {
+        // Incremented on every shape creation or modification
+        return this.version;
+    }
+
+    public int getGeometryVersion() {
+        // Incremented on every change of the distance field
+        return this.geometryVersion;
+    }
+
+    public Collection<Shape> getShapes() {
+        return this.shapes;
+    }
+
+    public StructArena getShapeArena() {
+        return this.shapeArena;
+    }
+
+    public int getShapeCount() {
+        return this.shapes.size();
+    }
+
+    public Camera getActiveCamera() {
+        return this.camera;
+    }
 }
\ No newline at end of file
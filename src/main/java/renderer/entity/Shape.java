@@ -1,91 +1,292 @@
-package renderer.entity;
-
-import org.joml.Vector3f;
-import renderer.RenderMaterial;
-import renderer.RenderShape;
-import renderer.asset.Material;
-import renderer.RenderShapeType;
-import renderer.RenderShapeParameters;
-
-import java.nio.ByteBuffer;
-
-public class Shape implements RenderShape {
-    public final static int BYTE_COUNT = 32 + RenderShapeParameters.BYTE_COUNT;
-
-    private SceneManager manager;
-    private int index;
-
-    private Material material;
-    private RenderShapeType type;
-    private Vector3f position;
-
-    private RenderShapeParameters parameters;
-
-    public Shape(SceneManager manager, int index) {
-        this.manager = manager;
-        this.index = index;
-
-        this.position = new Vector3f();
-        this.type = null;
-        this.material = null;
-
-        this.parameters = new RenderShapeParameters();
-    }
-
-    @Override
-    public int getIndex() {
-        return this.index;
-    }
-
-    @Override
-    public void setType(RenderShapeType type) {
-        this.type = type;
-        this.manager.updateShape(this);
-    }
-
-    @Override
-    public void setMaterial(RenderMaterial material) {
-        this.material = (Material)material;
-        this.manager.updateShape(this);
-    }
-
-    @Override
-    public void setPosition(float x, float y, float z) {
-        this.position.set(x, y, z);
-        this.manager.updateShape(this);
-    }
-
-    @Override
-    public void setF0(float x, float y, float z, float w) {
-        this.parameters.f0.x = x;
-        this.parameters.f0.y = y;
-        this.parameters.f0.z = z;
-        this.parameters.f0.w = w;
-        this.manager.updateShape(this);
-    }
-
-    @Override
-    public void setF1(float x, float y, float z, float w) {
-        this.parameters.f1.x = x;
-        this.parameters.f1.y = y;
-        this.parameters.f1.z = z;
-        this.parameters.f1.w = w;
-        this.manager.updateShape(this);
-    }
-
-    public void setIndex(int index) {
-        this.index = index;
-    }
-
-    public void writeBuffer(ByteBuffer buffer) {
-        int bufferStart = this.index * BYTE_COUNT;
-        // Type
-        buffer.putInt(bufferStart + 0, this.type == null ? 0 : this.type.getID());
-        // Material
-        buffer.putInt(bufferStart + 4, this.material == null ? 0 : this.material.getIndex());
-        // Position
-        this.position.get(bufferStart + 16, buffer);
-        // Parameters
-        this.parameters.writeBuffer(bufferStart + 32, buffer);
-    }
+package renderer.entity;
+
+import org.joml.Vector3f;
+import org.joml.Vector3i;
+import renderer.RenderMaterial;
+import renderer.RenderShape;
+import renderer.asset.Material;
+import renderer.RenderShapeType;
+import renderer.RenderShapeParameters;
+
+import java.nio.ByteBuffer;
+
+public class Shape implements RenderShape {
+    public final static int BYTE_COUNT = 32 + RenderShapeParameters.BYTE_COUNT;
+
+    // Field offsets, same layout as Shape in scene.glsl
+    private final static int TYPE_OFFSET = 0;
+    private final static int MATERIAL_OFFSET = 4;
+    private final static int INSTANCE_OFFSET_OFFSET = 8;
+    private final static int INSTANCE_COUNT_OFFSET = 12;
+    private final static int POSITION_OFFSET = 16;
+    private final static int PARAMETERS_OFFSET = 32;
+
+    // Instance slots : position, scale and rotation quaternion
+    public final static int INSTANCE_BYTE_COUNT = 32;
+    public final static int INSTANCE_FLOAT_COUNT = 8;
+    public final static int MAX_INSTANCE_COUNT = 1024;
+    // Instance count of a shape repeated over a grid
+    public final static int REPEATED = -1;
+
+    // Flyweight over a slot of the shape arena, the fields are stored in place
+    private SceneManager manager;
+    private int index;
+
+    private Material material;
+    private RenderShapeType type;
+
+    // Instances, a header slot precedes the transforms in the instance storage
+    private float[] instances;
+    private int instanceCapacity;
+    private Vector3f repetitionPeriod;
+    private Vector3i repetitionCount;
+
+    public Shape(SceneManager manager, int index) {
+        this.manager = manager;
+        this.index = index;
+
+        this.type = null;
+        this.material = null;
+    }
+
+    @Override
+    public int getIndex() {
+        return this.index;
+    }
+
+    @Override
+    public void setType(RenderShapeType type) {
+        this.type = type;
+        getBuffer().putInt(getStart() + TYPE_OFFSET, type == null ? 0 : type.getID());
+        updateTemplate();
+    }
+
+    @Override
+    public void setMaterial(RenderMaterial material) {
+        this.material = (Material)material;
+        getBuffer().putInt(getStart() + MATERIAL_OFFSET, material == null ? 0 : material.getIndex());
+        this.manager.updateMaterial(this);
+    }
+
+    @Override
+    public void setPosition(float x, float y, float z) {
+        ByteBuffer buffer = getBuffer();
+        int start = getStart() + POSITION_OFFSET;
+        buffer.putFloat(start, x);
+        buffer.putFloat(start + 4, y);
+        buffer.putFloat(start + 8, z);
+        this.manager.updateShape(this);
+    }
+
+    @Override
+    public void setF0(float x, float y, float z, float w) {
+        setParameter(PARAMETERS_OFFSET, x, y, z, w);
+        updateTemplate();
+    }
+
+    @Override
+    public void setF1(float x, float y, float z, float w) {
+        setParameter(PARAMETERS_OFFSET + 16, x, y, z, w);
+        updateTemplate();
+    }
+
+    @Override
+    public void setInstances(float[] transforms, int count) {
+        if (count < 0 || count > MAX_INSTANCE_COUNT) {
+            throw new IllegalArgumentException("instance count must be in [0, " + MAX_INSTANCE_COUNT + "]");
+        }
+        if (count > 0 && transforms.length < count * INSTANCE_FLOAT_COUNT) {
+            throw new IllegalArgumentException("expected " + count * INSTANCE_FLOAT_COUNT + " floats");
+        }
+
+        if (this.instances == null || this.instances.length < count * INSTANCE_FLOAT_COUNT) {
+            this.instances = new float[count * INSTANCE_FLOAT_COUNT];
+        }
+        if (count > 0) System.arraycopy(transforms, 0, this.instances, 0, count * INSTANCE_FLOAT_COUNT);
+        getBuffer().putInt(getStart() + INSTANCE_COUNT_OFFSET, count);
+        this.manager.updateInstances(this);
+    }
+
+    @Override
+    public void setRepetition(float periodX, float periodY, float periodZ, int countX, int countY, int countZ) {
+        if (periodX <= 0.0f || periodY <= 0.0f || periodZ <= 0.0f) {
+            throw new IllegalArgumentException("repetition period must be positive");
+        }
+        // Copies further than the neighbouring cells are only bounded, they must not overlap them
+        float radius = getTemplateRadius();
+        if (radius >= 0.0f && Math.min(periodX, Math.min(periodY, periodZ)) < 2.0f * radius) {
+            throw new IllegalArgumentException("repetition period must be at least twice the template radius");
+        }
+
+        if (this.repetitionPeriod == null) {
+            this.repetitionPeriod = new Vector3f();
+            this.repetitionCount = new Vector3i();
+        }
+        this.repetitionPeriod.set(periodX, periodY, periodZ);
+        this.repetitionCount.set(Math.max(countX, 0), Math.max(countY, 0), Math.max(countZ, 0));
+        getBuffer().putInt(getStart() + INSTANCE_COUNT_OFFSET, REPEATED);
+        this.manager.updateInstances(this);
+    }
+
+    public void setInstanceRange(int offset, int capacity) {
+        getBuffer().putInt(getStart() + INSTANCE_OFFSET_OFFSET, offset);
+        this.instanceCapacity = capacity;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public RenderShapeType getType() {
+        return this.type;
+    }
+
+    public Material getMaterial() {
+        return this.material;
+    }
+
+    public Vector3f getPosition(Vector3f dest) {
+        ByteBuffer buffer = getBuffer();
+        int start = getStart() + POSITION_OFFSET;
+        return dest.set(buffer.getFloat(start), buffer.getFloat(start + 4), buffer.getFloat(start + 8));
+    }
+
+    public RenderShapeParameters getParameters(RenderShapeParameters dest) {
+        ByteBuffer buffer = getBuffer();
+        int start = getStart() + PARAMETERS_OFFSET;
+        dest.f0.set(buffer.getFloat(start), buffer.getFloat(start + 4), buffer.getFloat(start + 8), buffer.getFloat(start + 12));
+        dest.f1.set(buffer.getFloat(start + 16), buffer.getFloat(start + 20), buffer.getFloat(start + 24), buffer.getFloat(start + 28));
+        return dest;
+    }
+
+    public int getInstanceCount() {
+        return getBuffer().getInt(getStart() + INSTANCE_COUNT_OFFSET);
+    }
+
+    public float[] getInstances() {
+        return this.instances;
+    }
+
+    public int getInstanceOffset() {
+        return getBuffer().getInt(getStart() + INSTANCE_OFFSET_OFFSET);
+    }
+
+    public int getInstanceCapacity() {
+        return this.instanceCapacity;
+    }
+
+    public int getInstanceSlotCount() {
+        int count = getInstanceCount();
+        if (count == 0) return 0;
+        // Header, transforms and the instance tree
+        return 1 + Math.max(count, 0) + InstanceBVH.getNodeCount(count);
+    }
+
+    public Vector3f getRepetitionPeriod() {
+        // Null until the shape is repeated
+        return this.repetitionPeriod;
+    }
+
+    public Vector3i getRepetitionCount() {
+        return this.repetitionCount;
+    }
+
+    public float getTemplateRadius() {
+        // Bounding sphere of the template around its origin, negative if unbounded
+        if (this.type == null) return -1.0f;
+        Vector3f min = new Vector3f();
+        Vector3f max = new Vector3f();
+        this.type.getBounds(getParameters(new RenderShapeParameters()), min, max);
+        if (!min.isFinite() || !max.isFinite()) return -1.0f;
+        return min.absolute().max(max.absolute()).length();
+    }
+
+    public boolean getWorldBounds(Vector3f min, Vector3f max) {
+        // Untyped shapes are evaluated everywhere by the GPU
+        if (this.type == null) return false;
+        this.type.getBounds(getParameters(new RenderShapeParameters()), min, max);
+        if (!min.isFinite() || !max.isFinite()) return false;
+        int instanceCount = getInstanceCount();
+        if (instanceCount == REPEATED) {
+            // Infinite along the axes without a cell count
+            if (this.repetitionCount.x == 0 || this.repetitionCount.y == 0 || this.repetitionCount.z == 0) return false;
+            max.add(this.repetitionPeriod.x * (this.repetitionCount.x - 1),
+                    this.repetitionPeriod.y * (this.repetitionCount.y - 1),
+                    this.repetitionPeriod.z * (this.repetitionCount.z - 1));
+        } else if (instanceCount > 0) {
+            // Union of the bounding spheres of the rotated and scaled templates
+            float radius = min.absolute().max(max.absolute()).length();
+            min.set(Float.POSITIVE_INFINITY);
+            max.set(Float.NEGATIVE_INFINITY);
+            for (int i = 0; i < instanceCount; i++) {
+                int o = i * INSTANCE_FLOAT_COUNT;
+                float extent = radius * this.instances[o + 3];
+                min.set(Math.min(min.x, this.instances[o] - extent), Math.min(min.y, this.instances[o + 1] - extent),
+                        Math.min(min.z, this.instances[o + 2] - extent));
+                max.set(Math.max(max.x, this.instances[o] + extent), Math.max(max.y, this.instances[o + 1] + extent),
+                        Math.max(max.z, this.instances[o + 2] + extent));
+            }
+        }
+        ByteBuffer buffer = getBuffer();
+        int start = getStart() + POSITION_OFFSET;
+        min.add(buffer.getFloat(start), buffer.getFloat(start + 4), buffer.getFloat(start + 8));
+        max.add(buffer.getFloat(start), buffer.getFloat(start + 4), buffer.getFloat(start + 8));
+        return true;
+    }
+
+    public void writeBuffer(ByteBuffer buffer) {
+        // The arena already holds the layout, packing is a copy of the slot
+        this.manager.getShapeArena().copySlot(this.index, buffer);
+    }
+
+    public void writeInstances(ByteBuffer buffer) {
+        int instanceCount = getInstanceCount();
+        if (instanceCount == 0) return;
+        int bufferStart = getInstanceOffset() * INSTANCE_BYTE_COUNT;
+        // Header : repetition period, template radius and repetition count
+        boolean repeated = instanceCount == REPEATED;
+        buffer.putFloat(bufferStart + 0, repeated ? this.repetitionPeriod.x : 0.0f);
+        buffer.putFloat(bufferStart + 4, repeated ? this.repetitionPeriod.y : 0.0f);
+        buffer.putFloat(bufferStart + 8, repeated ? this.repetitionPeriod.z : 0.0f);
+        buffer.putFloat(bufferStart + 12, getTemplateRadius());
+        buffer.putFloat(bufferStart + 16, repeated ? this.repetitionCount.x : 0.0f);
+        buffer.putFloat(bufferStart + 20, repeated ? this.repetitionCount.y : 0.0f);
+        buffer.putFloat(bufferStart + 24, repeated ? this.repetitionCount.z : 0.0f);
+        // Transforms
+        for (int i = 0; i < Math.max(instanceCount, 0) * INSTANCE_FLOAT_COUNT; i++) {
+            buffer.putFloat(bufferStart + INSTANCE_BYTE_COUNT + i * 4, this.instances[i]);
+        }
+        // Tree over the instances, unbounded templates are evaluated in order
+        float radius = getTemplateRadius();
+        if (InstanceBVH.getNodeCount(instanceCount) > 0 && radius >= 0.0f) {
+            this.manager.getInstanceBVH().write(this.instances, instanceCount, radius, buffer,
+                    bufferStart + (1 + instanceCount) * INSTANCE_BYTE_COUNT);
+        }
+    }
+
+    private void updateTemplate() {
+        // The instance header and tree depend on the template bounds
+        if (getInstanceCount() != 0) this.manager.updateInstances(this);
+        else this.manager.updateShape(this);
+    }
+
+    private ByteBuffer getBuffer() {
+        return this.manager.getShapeArena().getBuffer();
+    }
+
+    private int getStart() {
+        if (this.index < 0) {
+            throw new IllegalStateException("shape was removed");
+        }
+        return this.index * BYTE_COUNT;
+    }
+
+    private void setParameter(int offset, float x, float y, float z, float w) {
+        ByteBuffer buffer = getBuffer();
+        int start = getStart() + offset;
+        buffer.putFloat(start, x);
+        buffer.putFloat(start + 4, y);
+        buffer.putFloat(start + 8, z);
+        buffer.putFloat(start + 12, w);
+    }
 }
\ No newline at end of file
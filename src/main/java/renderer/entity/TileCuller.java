@@ -0,0 +1,181 @@
+package renderer.entity;
+
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import org.joml.Vector4f;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+
+public class TileCuller {
+    public final static int TILE_SIZE = 32;
+    public final static int TILE_BYTE_COUNT = 8;
+    public final static int INDEX_BYTE_COUNT = 4;
+
+    private int tileCountX;
+    private int tileCountY;
+
+    // Per tile lists, stored back to back
+    private int[] tileOffsets;
+    private int[] tileCounts;
+    private int[] tileShapes;
+    private int entryCount;
+
+    // Tile rectangle of every visible bounded shape
+    private int[] visibleShapes;
+    private int[] visibleRects;
+    private int visibleCount;
+    private int[] unboundedShapes;
+    private int unboundedCount;
+
+    private final Vector3f min;
+    private final Vector3f max;
+    private final Vector4f corner;
+
+    public TileCuller() {
+        this.tileOffsets = new int[0];
+        this.tileCounts = new int[0];
+        this.tileShapes = new int[0];
+        this.visibleShapes = new int[0];
+        this.visibleRects = new int[0];
+        this.unboundedShapes = new int[0];
+        this.min = new Vector3f();
+        this.max = new Vector3f();
+        this.corner = new Vector4f();
+    }
+
+    public int getTileCountX() {
+        return this.tileCountX;
+    }
+
+    public int getTileCount() {
+        return this.tileCountX * this.tileCountY;
+    }
+
+    public int getEntryCount() {
+        return this.entryCount;
+    }
+
+    public float getAverageShapesPerTile() {
+        return getTileCount() == 0 ? 0.0f : (float)this.entryCount / (float)getTileCount();
+    }
+
+    public void cull(Collection<Shape> shapes, Matrix4f viewProjection, int width, int height) {
+        this.tileCountX = (width + TILE_SIZE - 1) / TILE_SIZE;
+        this.tileCountY = (height + TILE_SIZE - 1) / TILE_SIZE;
+        int tileCount = getTileCount();
+        if (this.tileCounts.length < tileCount) {
+            this.tileOffsets = new int[tileCount];
+            this.tileCounts = new int[tileCount];
+        }
+        if (this.visibleShapes.length < shapes.size()) {
+            this.visibleShapes = new int[shapes.size()];
+            this.visibleRects = new int[shapes.size() * 4];
+            this.unboundedShapes = new int[shapes.size()];
+        }
+
+        // Project the bounds of every shape
+        this.visibleCount = 0;
+        this.unboundedCount = 0;
+        for (Shape shape : shapes) {
+            if (!shape.getWorldBounds(this.min, this.max)) {
+                this.unboundedShapes[this.unboundedCount++] = shape.getIndex();
+            } else if (project(viewProjection, width, height, this.visibleCount * 4)) {
+                this.visibleShapes[this.visibleCount++] = shape.getIndex();
+            }
+        }
+
+        // Count shapes per tile, unbounded shapes belong to every tile
+        for (int t = 0; t < tileCount; t++) {
+            this.tileCounts[t] = this.unboundedCount;
+        }
+        for (int i = 0; i < this.visibleCount; i++) {
+            for (int y = this.visibleRects[i * 4 + 1]; y <= this.visibleRects[i * 4 + 3]; y++) {
+                for (int x = this.visibleRects[i * 4]; x <= this.visibleRects[i * 4 + 2]; x++) {
+                    this.tileCounts[y * this.tileCountX + x]++;
+                }
+            }
+        }
+        this.entryCount = 0;
+        for (int t = 0; t < tileCount; t++) {
+            this.tileOffsets[t] = this.entryCount;
+            this.entryCount += this.tileCounts[t];
+        }
+
+        // Fill the lists
+        if (this.tileShapes.length < this.entryCount) {
+            this.tileShapes = new int[Math.max(this.entryCount, this.tileShapes.length * 2)];
+        }
+        for (int t = 0; t < tileCount; t++) {
+            System.arraycopy(this.unboundedShapes, 0, this.tileShapes, this.tileOffsets[t], this.unboundedCount);
+            this.tileCounts[t] = this.unboundedCount;
+        }
+        for (int i = 0; i < this.visibleCount; i++) {
+            for (int y = this.visibleRects[i * 4 + 1]; y <= this.visibleRects[i * 4 + 3]; y++) {
+                for (int x = this.visibleRects[i * 4]; x <= this.visibleRects[i * 4 + 2]; x++) {
+                    int t = y * this.tileCountX + x;
+                    this.tileShapes[this.tileOffsets[t] + this.tileCounts[t]++] = this.visibleShapes[i];
+                }
+            }
+        }
+    }
+
+    public void writeTiles(ByteBuffer buffer) {
+        for (int t = 0; t < getTileCount(); t++) {
+            buffer.putInt(t * TILE_BYTE_COUNT + 0, this.tileOffsets[t]);
+            buffer.putInt(t * TILE_BYTE_COUNT + 4, this.tileCounts[t]);
+        }
+    }
+
+    public void writeShapes(ByteBuffer buffer) {
+        for (int i = 0; i < this.entryCount; i++) {
+            buffer.putInt(i * INDEX_BYTE_COUNT, this.tileShapes[i]);
+        }
+    }
+
+    private boolean project(Matrix4f viewProjection, int width, int height, int rect) {
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        int behindCount = 0;
+        for (int c = 0; c < 8; c++) {
+            this.corner.set(
+                    (c & 1) == 0 ? this.min.x : this.max.x,
+                    (c & 2) == 0 ? this.min.y : this.max.y,
+                    (c & 4) == 0 ? this.min.z : this.max.z,
+                    1.0f);
+            viewProjection.transform(this.corner);
+            if (this.corner.w <= 0.0f) {
+                behindCount++;
+                continue;
+            }
+            minX = Math.min(minX, this.corner.x / this.corner.w);
+            minY = Math.min(minY, this.corner.y / this.corner.w);
+            maxX = Math.max(maxX, this.corner.x / this.corner.w);
+            maxY = Math.max(maxY, this.corner.y / this.corner.w);
+        }
+
+        // Entirely behind the camera
+        if (behindCount == 8) return false;
+
+        // Crosses the camera plane, conservatively cover the whole screen
+        if (behindCount > 0) {
+            minX = -1.0f; minY = -1.0f;
+            maxX = 1.0f; maxY = 1.0f;
+        }
+
+        // Outside of the screen
+        if (maxX < -1.0f || maxY < -1.0f || minX > 1.0f || minY > 1.0f) return false;
+
+        // NDC to tile coordinates
+        this.visibleRects[rect + 0] = toTile(minX, width, this.tileCountX);
+        this.visibleRects[rect + 1] = toTile(minY, height, this.tileCountY);
+        this.visibleRects[rect + 2] = toTile(maxX, width, this.tileCountX);
+        this.visibleRects[rect + 3] = toTile(maxY, height, this.tileCountY);
+        return true;
+    }
+
+    private static int toTile(float ndc, int size, int tileCount) {
+        int tile = (int)Math.floor((ndc * 0.5f + 0.5f) * (float)size / (float)TILE_SIZE);
+        return Math.max(0, Math.min(tile, tileCount - 1));
+    }
+}
\ No newline at end of file
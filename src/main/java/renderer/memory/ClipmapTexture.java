@@ -0,0 +1,56 @@
+package renderer.memory;
+
+import static org.lwjgl.opengl.GL45.*;
+
+public class ClipmapTexture {
+
+    private int levelCount;
+    private int resolution;
+
+    private int[] textures;
+    private int sampler;
+
+    public ClipmapTexture(int levelCount, int resolution) {
+        this.levelCount = levelCount;
+        this.resolution = resolution;
+
+        this.textures = new int[this.levelCount];
+        for (int level = 0; level < this.levelCount; level++) {
+            this.textures[level] = glGenTextures();
+            glBindTexture(GL_TEXTURE_3D, this.textures[level]);
+            glTexStorage3D(GL_TEXTURE_3D, 1, GL_R32F, this.resolution, this.resolution, this.resolution);
+        }
+        glBindTexture(GL_TEXTURE_3D, 0);
+
+        // Levels are stored toroidally, repeat wrapping interpolates across the seam
+        this.sampler = glGenSamplers();
+        glSamplerParameteri(this.sampler, GL_TEXTURE_MIN_FILTER, GL_LINEAR);
+        glSamplerParameteri(this.sampler, GL_TEXTURE_MAG_FILTER, GL_LINEAR);
+        glSamplerParameteri(this.sampler, GL_TEXTURE_WRAP_S, GL_REPEAT);
+        glSamplerParameteri(this.sampler, GL_TEXTURE_WRAP_T, GL_REPEAT);
+        glSamplerParameteri(this.sampler, GL_TEXTURE_WRAP_R, GL_REPEAT);
+    }
+
+    public void cleanup() {
+        for (int texture : this.textures) {
+            Utility.deleteTexture(texture);
+        }
+        Utility.deleteSampler(this.sampler);
+    }
+
+    public long getByteCount() {
+        return 4L * this.levelCount * this.resolution * this.resolution * this.resolution;
+    }
+
+    public void upload(int level, int x, int y, int z, int size, float[] data) {
+        glTextureSubImage3D(this.textures[level], 0, x, y, z, size, size, size, GL_RED, GL_FLOAT, data);
+    }
+
+    public void bindSamplers(int unit) {
+        for (int level = 0; level < this.levelCount; level++) {
+            glActiveTexture(GL_TEXTURE0 + unit + level);
+            glBindTexture(GL_TEXTURE_3D, this.textures[level]);
+            glBindSampler(unit + level, this.sampler);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,47 @@
+package renderer.memory;
+
+import renderer.cpu.DistanceField;
+
+import static org.lwjgl.opengl.GL45.*;
+
+public class DistanceFieldTexture {
+
+    private int resolution;
+
+    private int texture;
+    private int sampler;
+
+    public DistanceFieldTexture(DistanceField distanceField) {
+        this.resolution = distanceField.getResolution();
+
+        this.texture = glGenTextures();
+        glBindTexture(GL_TEXTURE_3D, this.texture);
+        glTexStorage3D(GL_TEXTURE_3D, 1, GL_R32F, this.resolution, this.resolution, this.resolution);
+        glTexSubImage3D(GL_TEXTURE_3D, 0, 0, 0, 0, this.resolution, this.resolution, this.resolution,
+                GL_RED, GL_FLOAT, distanceField.getData());
+        glBindTexture(GL_TEXTURE_3D, 0);
+
+        // Trilinear lookups, the border is never sampled since bounds are checked in the shader
+        this.sampler = glGenSamplers();
+        glSamplerParameteri(this.sampler, GL_TEXTURE_MIN_FILTER, GL_LINEAR);
+        glSamplerParameteri(this.sampler, GL_TEXTURE_MAG_FILTER, GL_LINEAR);
+        glSamplerParameteri(this.sampler, GL_TEXTURE_WRAP_S, GL_CLAMP_TO_EDGE);
+        glSamplerParameteri(this.sampler, GL_TEXTURE_WRAP_T, GL_CLAMP_TO_EDGE);
+        glSamplerParameteri(this.sampler, GL_TEXTURE_WRAP_R, GL_CLAMP_TO_EDGE);
+    }
+
+    public void cleanup() {
+        Utility.deleteTexture(this.texture);
+        Utility.deleteSampler(this.sampler);
+    }
+
+    public long getByteCount() {
+        return 4L * this.resolution * this.resolution * this.resolution;
+    }
+
+    public void bindSampler(int unit) {
+        glActiveTexture(GL_TEXTURE0 + unit);
+        glBindTexture(GL_TEXTURE_3D, this.texture);
+        glBindSampler(unit, this.sampler);
+    }
+}
\ No newline at end of file
@@ -1,72 +1,91 @@
-package renderer.memory;
-
-import static org.lwjgl.opengl.GL45.*;
-
-public class GBuffer {
-
-    private int width;
-    private int height;
-
-    private int positionDepthTexture;
-    private int normalMaterialTexture;
-
-    private int framebuffer;
-    private int sampler;
-
-    public GBuffer(int width, int height) {
-        this.width = width;
-        this.height = height;
-
-        this.positionDepthTexture = Utility.createTexture(this.width, this.height);
-        this.normalMaterialTexture = Utility.createTexture(this.width, this.height);
-
-        createFramebuffer();
-        this.sampler = Utility.createSampler();
-    }
-
-    public void cleanup() {
-        Utility.deleteTexture(this.positionDepthTexture);
-        Utility.deleteTexture(this.normalMaterialTexture);
-
-        deleteFramebuffer();
-        Utility.deleteSampler(this.sampler);
-    }
-
-    public void setViewport() {
-        glViewport(0, 0, this.width, this.height);
-    }
-
-    public void bindFramebuffer() {
-        glBindFramebuffer(GL_DRAW_FRAMEBUFFER, this.framebuffer);
-        int buffers[] = {GL_COLOR_ATTACHMENT0, GL_COLOR_ATTACHMENT1, GL_COLOR_ATTACHMENT2};
-        glDrawBuffers(buffers);
-    }
-
-    public void bindAllSamplers(int startUnit) {
-        glActiveTexture(GL_TEXTURE0 + startUnit + 0);
-        glBindTexture(GL_TEXTURE_2D, this.positionDepthTexture);
-        glBindSampler(startUnit + 0, this.sampler);
-
-        glActiveTexture(GL_TEXTURE0 + startUnit + 1);
-        glBindTexture(GL_TEXTURE_2D, this.normalMaterialTexture);
-        glBindSampler(startUnit + 1, this.sampler);
-    }
-
-    private void createFramebuffer() {
-        this.framebuffer = glGenFramebuffers();
-        glBindFramebuffer(GL_FRAMEBUFFER, this.framebuffer);
-
-        glBindTexture(GL_TEXTURE_2D, this.positionDepthTexture);
-        glFramebufferTexture2D(GL_FRAMEBUFFER, GL_COLOR_ATTACHMENT0, GL_TEXTURE_2D, this.positionDepthTexture, 0);
-
-        glBindTexture(GL_TEXTURE_2D, this.normalMaterialTexture);
-        glFramebufferTexture2D(GL_FRAMEBUFFER, GL_COLOR_ATTACHMENT1, GL_TEXTURE_2D, this.normalMaterialTexture, 0);
-
-        assert(glCheckFramebufferStatus(GL_FRAMEBUFFER) == GL_FRAMEBUFFER_COMPLETE);
-
-        glBindFramebuffer(GL_FRAMEBUFFER, 0);
-    }
-    private void deleteFramebuffer() {
-        glDeleteFramebuffers(this.framebuffer);
-    }
+package renderer.memory;
+
+import static org.lwjgl.opengl.GL45.*;
+
+public class GBuffer {
+    // Depth along the primary ray, octahedral normal and material index
+    public final static int DEPTH_FORMAT = GL_R32F;
+    public final static int NORMAL_FORMAT = GL_RG16_SNORM;
+    public final static int MATERIAL_FORMAT = GL_R16UI;
+
+    private int width;
+    private int height;
+
+    private int depthTexture;
+    private int normalTexture;
+    private int materialTexture;
+
+    private int framebuffer;
+    private int sampler;
+
+    public GBuffer(int width, int height) {
+        this.width = width;
+        this.height = height;
+
+        this.depthTexture = Utility.createTexture(this.width, this.height, DEPTH_FORMAT);
+        this.normalTexture = Utility.createTexture(this.width, this.height, NORMAL_FORMAT);
+        this.materialTexture = Utility.createTexture(this.width, this.height, MATERIAL_FORMAT);
+
+        createFramebuffer();
+        this.sampler = Utility.createNearestSampler();
+    }
+
+    public void cleanup() {
+        Utility.deleteTexture(this.depthTexture);
+        Utility.deleteTexture(this.normalTexture);
+        Utility.deleteTexture(this.materialTexture);
+
+        deleteFramebuffer();
+        Utility.deleteSampler(this.sampler);
+    }
+
+    public long getByteCount() {
+        return (long)this.width * this.height * (Utility.getPixelByteCount(DEPTH_FORMAT)
+                + Utility.getPixelByteCount(NORMAL_FORMAT) + Utility.getPixelByteCount(MATERIAL_FORMAT));
+    }
+
+    public void setViewport() {
+        glViewport(0, 0, this.width, this.height);
+    }
+
+    public void bindFramebuffer() {
+        glBindFramebuffer(GL_DRAW_FRAMEBUFFER, this.framebuffer);
+        int buffers[] = {GL_COLOR_ATTACHMENT0, GL_COLOR_ATTACHMENT1, GL_COLOR_ATTACHMENT2};
+        glDrawBuffers(buffers);
+    }
+
+    public void bindAllSamplers(int startUnit) {
+        glActiveTexture(GL_TEXTURE0 + startUnit + 0);
+        glBindTexture(GL_TEXTURE_2D, this.depthTexture);
+        glBindSampler(startUnit + 0, this.sampler);
+
+        glActiveTexture(GL_TEXTURE0 + startUnit + 1);
+        glBindTexture(GL_TEXTURE_2D, this.normalTexture);
+        glBindSampler(startUnit + 1, this.sampler);
+
+        glActiveTexture(GL_TEXTURE0 + startUnit + 2);
+        glBindTexture(GL_TEXTURE_2D, this.materialTexture);
+        glBindSampler(startUnit + 2, this.sampler);
+    }
+
+    private void createFramebuffer() {
+        this.framebuffer = glGenFramebuffers();
+        glBindFramebuffer(GL_FRAMEBUFFER, this.framebuffer);
+
+        glBindTexture(GL_TEXTURE_2D, this.depthTexture);
+        glFramebufferTexture2D(GL_FRAMEBUFFER, GL_COLOR_ATTACHMENT0, GL_TEXTURE_2D, this.depthTexture, 0);
+
+        glBindTexture(GL_TEXTURE_2D, this.normalTexture);
+        glFramebufferTexture2D(GL_FRAMEBUFFER, GL_COLOR_ATTACHMENT1, GL_TEXTURE_2D, this.normalTexture, 0);
+
+        glBindTexture(GL_TEXTURE_2D, this.materialTexture);
+        glFramebufferTexture2D(GL_FRAMEBUFFER, GL_COLOR_ATTACHMENT2, GL_TEXTURE_2D, this.materialTexture, 0);
+
+        assert(glCheckFramebufferStatus(GL_FRAMEBUFFER) == GL_FRAMEBUFFER_COMPLETE);
+
+        glBindFramebuffer(GL_FRAMEBUFFER, 0);
+    }
+    private void deleteFramebuffer() {
+        glDeleteFramebuffers(this.framebuffer);
+    }
 }
\ No newline at end of file
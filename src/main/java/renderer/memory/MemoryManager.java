@@ -1,103 +1,237 @@
-package renderer.memory;
-
-import org.lwjgl.BufferUtils;
-import renderer.asset.Material;
-import renderer.entity.Shape;
-
-import java.nio.ByteBuffer;
-
-import static org.lwjgl.opengl.GL15.*;
-import static org.lwjgl.opengl.GL15.glBindBuffer;
-import static org.lwjgl.opengl.GL30.glBindBufferBase;
-import static org.lwjgl.opengl.GL31.GL_UNIFORM_BUFFER;
-
-public class MemoryManager {
-    public final static int LAYOUT_HEADER_UBO_BINDING = 0;
-    public final static int LAYOUT_HEADER_UBO_LENGTH = 16;
-
-    public final static int MAX_MATERIAL_COUNT = 64;
-    public final static int MATERIAL_UBO_LENGTH = MAX_MATERIAL_COUNT * Material.BYTE_COUNT;
-    public final static int MATERIAL_UBO_BINDING = 1;
-
-    public final static int MAX_SHAPE_COUNT = 128;
-    public final static int SHAPE_UBO_LENGTH = MAX_SHAPE_COUNT * Shape.BYTE_COUNT;
-    public final static int SHAPE_UBO_BINDING = 2;
-
-    // Layout Header
-    private int layoutHeaderUBO;
-    private ByteBuffer layoutHeaderBuffer;
-
-    // Material
-    private int materialDataUBO;
-    private ByteBuffer materialDataBuffer;
-
-    // Shape
-    private int shapeDataUBO;
-    private ByteBuffer shapeDataBuffer;
-
-    public MemoryManager() {
-        // Create layout header UBO
-        this.layoutHeaderUBO = glGenBuffers();
-        glBindBuffer(GL_UNIFORM_BUFFER, this.layoutHeaderUBO);
-        glBufferData(GL_UNIFORM_BUFFER, LAYOUT_HEADER_UBO_LENGTH, GL_STATIC_DRAW);
-        glBindBufferBase(GL_UNIFORM_BUFFER, LAYOUT_HEADER_UBO_BINDING, this.layoutHeaderUBO);
-        glBindBuffer(GL_UNIFORM_BUFFER, 0);
-        this.layoutHeaderBuffer = BufferUtils.createByteBuffer(LAYOUT_HEADER_UBO_LENGTH);
-
-        // Create shape UBO
-        this.shapeDataUBO = glGenBuffers();
-        glBindBuffer(GL_UNIFORM_BUFFER, this.shapeDataUBO);
-        glBufferData(GL_UNIFORM_BUFFER, SHAPE_UBO_LENGTH, GL_STATIC_DRAW);
-        glBindBufferBase(GL_UNIFORM_BUFFER, SHAPE_UBO_BINDING, this.shapeDataUBO);
-        glBindBuffer(GL_UNIFORM_BUFFER, 0);
-        this.shapeDataBuffer = BufferUtils.createByteBuffer(SHAPE_UBO_LENGTH);
-
-        // Create material UBO
-        this.materialDataUBO = glGenBuffers();
-        glBindBuffer(GL_UNIFORM_BUFFER, this.materialDataUBO);
-        glBufferData(GL_UNIFORM_BUFFER, MATERIAL_UBO_LENGTH, GL_STATIC_DRAW);
-        glBindBufferBase(GL_UNIFORM_BUFFER, MATERIAL_UBO_BINDING, this.materialDataUBO);
-        glBindBuffer(GL_UNIFORM_BUFFER, 0);
-        this.materialDataBuffer = BufferUtils.createByteBuffer(MATERIAL_UBO_LENGTH);
-    }
-
-    public void cleanup() {
-        // Clear layout header UBO
-        glDeleteBuffers(this.layoutHeaderUBO);
-        this.layoutHeaderBuffer.clear();
-        // Clear shape UBO
-        glDeleteBuffers(this.shapeDataUBO);
-        this.shapeDataBuffer.clear();
-        // Clear material UBO
-        glDeleteBuffers(this.materialDataUBO);
-        this.materialDataBuffer.clear();
-    }
-
-    public void setMaterialCount(int count) {
-        this.layoutHeaderBuffer.putInt(0, count);
-        glBindBuffer(GL_UNIFORM_BUFFER, this.layoutHeaderUBO);
-        glBufferSubData(GL_UNIFORM_BUFFER, 0, this.layoutHeaderBuffer);
-        glBindBuffer(GL_UNIFORM_BUFFER, 0);
-    }
-
-    public void setShapeCount(int count) {
-        this.layoutHeaderBuffer.putInt(4, count);
-        glBindBuffer(GL_UNIFORM_BUFFER, this.layoutHeaderUBO);
-        glBufferSubData(GL_UNIFORM_BUFFER, 0, this.layoutHeaderBuffer);
-        glBindBuffer(GL_UNIFORM_BUFFER, 0);
-    }
-
-    public void updateMaterial(Material material) {
-        material.writeBuffer(this.materialDataBuffer);
-        glBindBuffer(GL_UNIFORM_BUFFER, this.materialDataUBO);
-        glBufferSubData(GL_UNIFORM_BUFFER, 0, this.materialDataBuffer);
-        glBindBuffer(GL_UNIFORM_BUFFER, 0);
-    }
-
-    public void updateShape(Shape shape) {
-        shape.writeBuffer(this.shapeDataBuffer);
-        glBindBuffer(GL_UNIFORM_BUFFER, this.shapeDataUBO);
-        glBufferSubData(GL_UNIFORM_BUFFER, 0, this.shapeDataBuffer);
-        glBindBuffer(GL_UNIFORM_BUFFER, 0);
-    }
+package renderer.memory;
+
+import renderer.asset.Material;
+import renderer.entity.BVH;
+import renderer.entity.Shape;
+import renderer.entity.TileCuller;
+import renderer.profiler.PassStatistics;
+
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+
+import static org.lwjgl.opengl.GL45.*;
+
+public class MemoryManager {
+    public final static int LAYOUT_HEADER_UBO_BINDING = 0;
+    public final static int LAYOUT_HEADER_UBO_LENGTH = 16;
+
+    public final static int INITIAL_MATERIAL_CAPACITY = 64;
+    public final static int MATERIAL_SSBO_BINDING = 1;
+
+    public final static int INITIAL_SHAPE_CAPACITY = 128;
+    public final static int SHAPE_SSBO_BINDING = 2;
+
+    public final static int INITIAL_BVH_NODE_CAPACITY = 2 * INITIAL_SHAPE_CAPACITY;
+    public final static int BVH_SSBO_BINDING = 3;
+
+    public final static int INITIAL_TILE_CAPACITY = 2048;
+    public final static int TILE_SSBO_BINDING = 4;
+    public final static int TILE_SHAPE_SSBO_BINDING = 5;
+
+    public final static int INITIAL_INSTANCE_CAPACITY = 256;
+    public final static int INSTANCE_SSBO_BINDING = 7;
+
+    private final static int FENCE_WAIT_WINDOW = 240;
+    private final static long FENCE_TIMEOUT = 1000000000L;
+
+    // Layout Header
+    private StorageBuffer layoutHeaderStorage;
+    private ByteBuffer layoutHeaderBuffer;
+
+    // Material
+    private StorageBuffer materialStorage;
+
+    // Shape
+    private StorageBuffer shapeStorage;
+
+    // BVH
+    private StorageBuffer bvhStorage;
+
+    // Tile lists
+    private StorageBuffer tileStorage;
+    private StorageBuffer tileShapeStorage;
+
+    // Instances
+    private StorageBuffer instanceStorage;
+
+    private StorageBuffer[] storages;
+
+    // Frames in flight, a region is written again once the fence of its last frame signaled
+    private long[] frameFences;
+    private int region;
+    private PassStatistics fenceWait;
+
+    // Statistics of the last flush
+    private int uploadedBytes;
+    private int uploadedRanges;
+
+    public MemoryManager() {
+        // Create layout header UBO, a single slot that never grows
+        this.layoutHeaderStorage = new StorageBuffer(GL_UNIFORM_BUFFER, LAYOUT_HEADER_UBO_BINDING, LAYOUT_HEADER_UBO_LENGTH, 1);
+        this.layoutHeaderBuffer = this.layoutHeaderStorage.getBuffer();
+
+        // Create shape SSBO
+        this.shapeStorage = new StorageBuffer(SHAPE_SSBO_BINDING, Shape.BYTE_COUNT, INITIAL_SHAPE_CAPACITY);
+
+        // Create material SSBO
+        this.materialStorage = new StorageBuffer(MATERIAL_SSBO_BINDING, Material.BYTE_COUNT, INITIAL_MATERIAL_CAPACITY);
+
+        // Create BVH SSBO
+        this.bvhStorage = new StorageBuffer(BVH_SSBO_BINDING, BVH.BYTE_COUNT, INITIAL_BVH_NODE_CAPACITY);
+
+        // Create tile lists SSBO
+        this.tileStorage = new StorageBuffer(TILE_SSBO_BINDING, TileCuller.TILE_BYTE_COUNT, INITIAL_TILE_CAPACITY);
+        this.tileShapeStorage = new StorageBuffer(TILE_SHAPE_SSBO_BINDING, TileCuller.INDEX_BYTE_COUNT, INITIAL_TILE_CAPACITY);
+
+        // Create instance SSBO
+        this.instanceStorage = new StorageBuffer(INSTANCE_SSBO_BINDING, Shape.INSTANCE_BYTE_COUNT, INITIAL_INSTANCE_CAPACITY);
+
+        this.storages = new StorageBuffer[] {
+                this.layoutHeaderStorage,
+                this.materialStorage,
+                this.shapeStorage,
+                this.bvhStorage,
+                this.tileStorage,
+                this.tileShapeStorage,
+                this.instanceStorage
+        };
+
+        this.frameFences = new long[StorageBuffer.REGION_COUNT];
+        this.region = 0;
+        this.fenceWait = new PassStatistics("FENCE WAIT", FENCE_WAIT_WINDOW);
+    }
+
+    public void cleanup() {
+        // Clear frame fences
+        for (long fence : this.frameFences) {
+            if (fence != 0) glDeleteSync(fence);
+        }
+        // Clear layout header UBO
+        this.layoutHeaderStorage.cleanup();
+        // Clear shape SSBO
+        this.shapeStorage.cleanup();
+        // Clear material SSBO
+        this.materialStorage.cleanup();
+        // Clear BVH SSBO
+        this.bvhStorage.cleanup();
+        // Clear tile lists SSBO
+        this.tileStorage.cleanup();
+        this.tileShapeStorage.cleanup();
+        // Clear instance SSBO
+        this.instanceStorage.cleanup();
+    }
+
+    public void setMaterialCount(int count) {
+        this.materialStorage.ensureCapacity(count);
+        this.layoutHeaderBuffer.putInt(0, count);
+        this.layoutHeaderStorage.markDirty(0);
+    }
+
+    public void setShapeCount(int count) {
+        this.shapeStorage.ensureCapacity(count);
+        this.layoutHeaderBuffer.putInt(4, count);
+        this.layoutHeaderStorage.markDirty(0);
+    }
+
+    public StructArena getMaterialArena() {
+        // Materials write their fields in place, dirty slots are uploaded on flush
+        return this.materialStorage.getArena();
+    }
+
+    public StructArena getShapeArena() {
+        // Shapes write their fields in place, dirty slots are uploaded on flush
+        return this.shapeStorage.getArena();
+    }
+
+    public void updateInstances(Shape shape) {
+        // All the transforms of a shape are contiguous, they go up as one range
+        int slotCount = shape.getInstanceSlotCount();
+        if (slotCount == 0) return;
+        this.instanceStorage.ensureCapacity(shape.getInstanceOffset() + slotCount);
+        shape.writeInstances(this.instanceStorage.getBuffer());
+        this.instanceStorage.markDirty(shape.getInstanceOffset(), shape.getInstanceOffset() + slotCount);
+    }
+
+    public void updateBVH(BVH bvh) {
+        BitSet dirtyNodes = bvh.getDirtyNodes();
+        if (dirtyNodes.isEmpty()) return;
+
+        this.bvhStorage.ensureCapacity(bvh.getNodeCount());
+        for (int i = dirtyNodes.nextSetBit(0); i >= 0; i = dirtyNodes.nextSetBit(i + 1)) {
+            bvh.writeNode(i, this.bvhStorage.getBuffer());
+            this.bvhStorage.markDirty(i);
+        }
+        dirtyNodes.clear();
+
+        this.layoutHeaderBuffer.putInt(8, bvh.getNodeCount());
+        this.layoutHeaderBuffer.putInt(12, bvh.getUnboundedCount());
+        this.layoutHeaderStorage.markDirty(0);
+    }
+
+    public void updateTileLists(TileCuller culler) {
+        this.tileStorage.ensureCapacity(culler.getTileCount());
+        culler.writeTiles(this.tileStorage.getBuffer());
+        this.tileStorage.markDirty(0, culler.getTileCount());
+
+        this.tileShapeStorage.ensureCapacity(culler.getEntryCount());
+        culler.writeShapes(this.tileShapeStorage.getBuffer());
+        this.tileShapeStorage.markDirty(0, culler.getEntryCount());
+    }
+
+    public void flush() {
+        this.uploadedBytes = 0;
+        this.uploadedRanges = 0;
+
+        // Next region of the ring, the GPU may still read it for the frame issued REGION_COUNT frames ago
+        this.region = (this.region + 1) % StorageBuffer.REGION_COUNT;
+        waitFrameFence();
+
+        // Storage buffers
+        for (StorageBuffer storage : this.storages) {
+            storage.flush(this.region);
+            this.uploadedBytes += storage.getUploadedBytes();
+            this.uploadedRanges += storage.getUploadedRanges();
+        }
+    }
+
+    public void endFrame() {
+        // Signaled once the GPU executed every command reading the current region
+        this.frameFences[this.region] = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+    }
+
+    public PassStatistics getFenceWait() {
+        return this.fenceWait;
+    }
+
+    public int getUploadedBytes() {
+        return this.uploadedBytes;
+    }
+
+    public int getUploadedRanges() {
+        return this.uploadedRanges;
+    }
+
+    public int getShapeCapacity() {
+        return this.shapeStorage.getCapacity();
+    }
+
+    public int getMaterialCapacity() {
+        return this.materialStorage.getCapacity();
+    }
+
+    private void waitFrameFence() {
+        long fence = this.frameFences[this.region];
+        if (fence == 0) return;
+
+        // Poll first, flushing the command queue only when the GPU is actually behind
+        long start = System.nanoTime();
+        int status = glClientWaitSync(fence, 0, 0);
+        while (status == GL_TIMEOUT_EXPIRED) {
+            status = glClientWaitSync(fence, GL_SYNC_FLUSH_COMMANDS_BIT, FENCE_TIMEOUT);
+        }
+        this.fenceWait.addSample((float)(System.nanoTime() - start) / 1000000.0f);
+
+        glDeleteSync(fence);
+        this.frameFences[this.region] = 0;
+    }
 }
\ No newline at end of file
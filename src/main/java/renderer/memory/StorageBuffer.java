@@ -0,0 +1,146 @@
+package renderer.memory;
+
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+
+import static org.lwjgl.opengl.GL45.*;
+
+public class StorageBuffer {
+
+    // One region per frame in flight, the GPU reads one while the CPU writes another
+    public final static int REGION_COUNT = 3;
+
+    private final static int STORAGE_FLAGS = GL_MAP_WRITE_BIT | GL_MAP_PERSISTENT_BIT | GL_MAP_COHERENT_BIT;
+
+    private int target;
+    private int binding;
+    private int alignment;
+    private StructArena arena;
+
+    // Persistently mapped, the regions are laid out one after the other
+    private int buffer;
+    private ByteBuffer mapping;
+    private int allocatedCapacity;
+    private long regionLength;
+    // Slots changed since each region was last written
+    private BitSet[] pendingSlots;
+
+    // Statistics of the last flush
+    private int uploadedBytes;
+    private int uploadedRanges;
+
+    public StorageBuffer(int binding, int slotLength, int initialCapacity) {
+        this(GL_SHADER_STORAGE_BUFFER, binding, slotLength, initialCapacity);
+    }
+
+    public StorageBuffer(int target, int binding, int slotLength, int initialCapacity) {
+        this.target = target;
+        this.binding = binding;
+        this.arena = new StructArena(slotLength, initialCapacity);
+        this.alignment = glGetInteger(target == GL_UNIFORM_BUFFER ?
+                GL_UNIFORM_BUFFER_OFFSET_ALIGNMENT : GL_SHADER_STORAGE_BUFFER_OFFSET_ALIGNMENT);
+
+        this.buffer = 0;
+        this.allocatedCapacity = 0;
+        this.pendingSlots = new BitSet[REGION_COUNT];
+        for (int i = 0; i < REGION_COUNT; i++) {
+            this.pendingSlots[i] = new BitSet();
+        }
+    }
+
+    public void cleanup() {
+        if (this.buffer != 0) {
+            glUnmapNamedBuffer(this.buffer);
+            glDeleteBuffers(this.buffer);
+        }
+    }
+
+    public StructArena getArena() {
+        return this.arena;
+    }
+
+    public int getCapacity() {
+        return this.arena.getCapacity();
+    }
+
+    public ByteBuffer getBuffer() {
+        return this.arena.getBuffer();
+    }
+
+    public void ensureCapacity(int slotCount) {
+        // The GPU buffer is reallocated on the next flush
+        this.arena.ensureCapacity(slotCount);
+    }
+
+    public void markDirty(int slot) {
+        this.arena.markDirty(slot);
+    }
+
+    public void markDirty(int fromSlot, int toSlot) {
+        this.arena.markDirty(fromSlot, toSlot);
+    }
+
+    public void flush(int region) {
+        this.uploadedBytes = 0;
+        this.uploadedRanges = 0;
+
+        // Every region misses the changes made since it was last written
+        BitSet dirtySlots = this.arena.getDirtySlots();
+        if (this.allocatedCapacity != this.arena.getCapacity()) {
+            allocate();
+        } else {
+            for (BitSet pending : this.pendingSlots) {
+                pending.or(dirtySlots);
+            }
+        }
+        dirtySlots.clear();
+
+        // The caller waited for the GPU to release this region, coalesced ranges are copied straight in
+        BitSet pending = this.pendingSlots[region];
+        int slotLength = this.arena.getSlotLength();
+        long source = MemoryUtil.memAddress(this.arena.getBuffer());
+        long destination = MemoryUtil.memAddress(this.mapping) + region * this.regionLength;
+        int start = pending.nextSetBit(0);
+        while (start >= 0) {
+            int end = pending.nextClearBit(start);
+            MemoryUtil.memCopy(source + (long)start * slotLength, destination + (long)start * slotLength,
+                    (long)(end - start) * slotLength);
+            this.uploadedBytes += (end - start) * slotLength;
+            this.uploadedRanges++;
+            start = pending.nextSetBit(end);
+        }
+        pending.clear();
+
+        glBindBufferRange(this.target, this.binding, this.buffer, region * this.regionLength, this.regionLength);
+    }
+
+    public int getUploadedBytes() {
+        return this.uploadedBytes;
+    }
+
+    public int getUploadedRanges() {
+        return this.uploadedRanges;
+    }
+
+    private void allocate() {
+        // Storage is immutable, growing means a new buffer, the old one is released once the GPU is done with it
+        if (this.buffer != 0) {
+            glUnmapNamedBuffer(this.buffer);
+            glDeleteBuffers(this.buffer);
+        }
+
+        this.allocatedCapacity = this.arena.getCapacity();
+        long length = (long)this.allocatedCapacity * this.arena.getSlotLength();
+        this.regionLength = (length + this.alignment - 1) / this.alignment * this.alignment;
+        this.buffer = glCreateBuffers();
+        glNamedBufferStorage(this.buffer, this.regionLength * REGION_COUNT, STORAGE_FLAGS);
+        this.mapping = glMapNamedBufferRange(this.buffer, 0, this.regionLength * REGION_COUNT, STORAGE_FLAGS);
+
+        // Each region is filled in full on its next flush
+        for (BitSet pending : this.pendingSlots) {
+            pending.set(0, this.allocatedCapacity);
+        }
+    }
+}
\ No newline at end of file
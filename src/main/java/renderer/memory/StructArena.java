@@ -0,0 +1,87 @@
+package renderer.memory;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+
+public class StructArena {
+
+    private final static int GROWTH_FACTOR = 2;
+
+    private int slotLength;
+    private int capacity;
+
+    // Off-heap slots in the layout read by the shaders
+    private ByteBuffer buffer;
+    private BitSet dirtySlots;
+
+    public StructArena(int slotLength, int initialCapacity) {
+        this.slotLength = slotLength;
+        this.capacity = initialCapacity;
+        this.buffer = BufferUtils.createByteBuffer(this.capacity * this.slotLength);
+        this.dirtySlots = new BitSet(this.capacity);
+    }
+
+    public int getSlotLength() {
+        return this.slotLength;
+    }
+
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    public ByteBuffer getBuffer() {
+        // Replaced when the arena grows, never keep a reference
+        return this.buffer;
+    }
+
+    public BitSet getDirtySlots() {
+        return this.dirtySlots;
+    }
+
+    public long getByteCount() {
+        return (long)this.capacity * this.slotLength;
+    }
+
+    public void ensureCapacity(int slotCount) {
+        if (slotCount <= this.capacity) return;
+
+        // Grow geometrically
+        int capacity = this.capacity;
+        while (capacity < slotCount) {
+            capacity *= GROWTH_FACTOR;
+        }
+        ByteBuffer buffer = BufferUtils.createByteBuffer(capacity * this.slotLength);
+        buffer.put(this.buffer.duplicate().clear());
+        buffer.clear();
+
+        this.capacity = capacity;
+        this.buffer = buffer;
+    }
+
+    public void markDirty(int slot) {
+        this.dirtySlots.set(slot);
+    }
+
+    public void markDirty(int fromSlot, int toSlot) {
+        this.dirtySlots.set(fromSlot, toSlot);
+    }
+
+    public void clearSlot(int slot) {
+        MemoryUtil.memSet(MemoryUtil.memAddress(this.buffer) + (long)slot * this.slotLength, 0, this.slotLength);
+        this.dirtySlots.set(slot);
+    }
+
+    public void copySlot(int fromSlot, int toSlot) {
+        long address = MemoryUtil.memAddress(this.buffer);
+        MemoryUtil.memCopy(address + (long)fromSlot * this.slotLength, address + (long)toSlot * this.slotLength, this.slotLength);
+        this.dirtySlots.set(toSlot);
+    }
+
+    public void copySlot(int slot, ByteBuffer destination) {
+        MemoryUtil.memCopy(MemoryUtil.memAddress(this.buffer) + (long)slot * this.slotLength,
+                MemoryUtil.memAddress(destination) + (long)slot * this.slotLength, this.slotLength);
+    }
+}
\ No newline at end of file
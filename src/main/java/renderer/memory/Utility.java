@@ -1,31 +1,58 @@
-package renderer.memory;
-
-import static org.lwjgl.opengl.GL45.*;
-
-public class Utility {
-
-    public static int createTexture(int width, int height) {
-        int texture = glGenTextures();
-        glBindTexture(GL_TEXTURE_2D, texture);
-        glTexStorage2D(GL_TEXTURE_2D, 1, GL_RGBA32F, width, height);
-        int[] clearColor = {0, 0, 0, 0};
-        glClearTexImage(texture, 0, GL_RGBA, GL_UNSIGNED_BYTE, clearColor);
-        glBindTexture(GL_TEXTURE_2D, 0);
-        return texture;
-    }
-    public static void deleteTexture(int texture) {
-        glDeleteTextures(texture);
-    }
-
-    public static int createSampler() {
-        int sampler = glGenSamplers();
-        glSamplerParameteri(sampler, GL_TEXTURE_MIN_FILTER, GL_LINEAR_MIPMAP_LINEAR);
-        glSamplerParameteri(sampler, GL_TEXTURE_MAG_FILTER, GL_LINEAR);
-        glSamplerParameteri(sampler, GL_TEXTURE_WRAP_S, GL_CLAMP_TO_BORDER);
-        glSamplerParameteri(sampler, GL_TEXTURE_WRAP_T, GL_CLAMP_TO_BORDER);
-        return sampler;
-    }
-    public static void deleteSampler(int sampler) {
-        glDeleteSamplers(sampler);
-    }
+package renderer.memory;
+
+import static org.lwjgl.opengl.GL45.*;
+
+public class Utility {
+
+    public static int createTexture(int width, int height, int format) {
+        int texture = glGenTextures();
+        glBindTexture(GL_TEXTURE_2D, texture);
+        glTexStorage2D(GL_TEXTURE_2D, 1, format, width, height);
+        int[] clearColor = {0, 0, 0, 0};
+        glClearTexImage(texture, 0, isIntegerFormat(format) ? GL_RGBA_INTEGER : GL_RGBA, GL_UNSIGNED_BYTE, clearColor);
+        glBindTexture(GL_TEXTURE_2D, 0);
+        return texture;
+    }
+    public static void deleteTexture(int texture) {
+        glDeleteTextures(texture);
+    }
+
+    public static boolean isIntegerFormat(int format) {
+        return format == GL_R16UI || format == GL_R32UI;
+    }
+
+    public static int getPixelByteCount(int format) {
+        switch (format) {
+            case GL_R16UI: return 2;
+            case GL_R32F:
+            case GL_R32UI:
+            case GL_RG16_SNORM:
+            case GL_RGBA8:
+            case GL_R11F_G11F_B10F: return 4;
+            case GL_RGBA16F: return 8;
+            case GL_RGBA32F: return 16;
+            default: throw new IllegalArgumentException("Unknown texture format " + format);
+        }
+    }
+
+    public static int createSampler() {
+        int sampler = glGenSamplers();
+        glSamplerParameteri(sampler, GL_TEXTURE_MIN_FILTER, GL_LINEAR_MIPMAP_LINEAR);
+        glSamplerParameteri(sampler, GL_TEXTURE_MAG_FILTER, GL_LINEAR);
+        glSamplerParameteri(sampler, GL_TEXTURE_WRAP_S, GL_CLAMP_TO_BORDER);
+        glSamplerParameteri(sampler, GL_TEXTURE_WRAP_T, GL_CLAMP_TO_BORDER);
+        return sampler;
+    }
+    public static int createNearestSampler() {
+        // Required by integer textures, which are incomplete with linear filtering
+        int sampler = glGenSamplers();
+        glSamplerParameteri(sampler, GL_TEXTURE_MIN_FILTER, GL_NEAREST);
+        glSamplerParameteri(sampler, GL_TEXTURE_MAG_FILTER, GL_NEAREST);
+        glSamplerParameteri(sampler, GL_TEXTURE_WRAP_S, GL_CLAMP_TO_EDGE);
+        glSamplerParameteri(sampler, GL_TEXTURE_WRAP_T, GL_CLAMP_TO_EDGE);
+        return sampler;
+    }
+    public static void deleteSampler(int sampler) {
+        glDeleteSamplers(sampler);
+    }
 }
\ No newline at end of file
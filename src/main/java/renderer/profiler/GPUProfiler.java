@@ -0,0 +1,117 @@
+package renderer.profiler;
+
+import static org.lwjgl.opengl.GL45.*;
+
+public class GPUProfiler {
+    private final static int WINDOW_SIZE = 240;
+
+    private PassStatistics[] passes;
+    private PassStatistics frame;
+
+    // Ring of timestamp queries, two per pass and per frame in flight
+    private int latency;
+    private int[] queries;
+    private boolean[] issued;
+    private int currentFrame;
+    private int droppedFrames;
+    private int frameCount;
+
+    public GPUProfiler(String[] passNames, int latency) {
+        this.latency = latency;
+        this.passes = new PassStatistics[passNames.length];
+        for (int i = 0; i < passNames.length; i++) {
+            this.passes[i] = new PassStatistics(passNames[i], WINDOW_SIZE);
+        }
+        this.frame = new PassStatistics("FRAME", WINDOW_SIZE);
+
+        this.queries = new int[latency * passNames.length * 2];
+        glGenQueries(this.queries);
+        this.issued = new boolean[latency];
+        this.currentFrame = 0;
+        this.droppedFrames = 0;
+    }
+
+    public void cleanup() {
+        glDeleteQueries(this.queries);
+    }
+
+    public boolean beginFrame() {
+        // Read back the oldest frame of the ring without waiting for it
+        boolean collected = false;
+        if (this.issued[this.currentFrame]) {
+            int last = query(this.currentFrame, this.passes.length - 1, 1);
+            if (glGetQueryObjecti(last, GL_QUERY_RESULT_AVAILABLE) == GL_TRUE) {
+                collect(this.currentFrame);
+                collected = true;
+            } else {
+                this.droppedFrames++;
+            }
+            this.issued[this.currentFrame] = false;
+        }
+        return collected;
+    }
+
+    public void begin(int pass) {
+        glQueryCounter(query(this.currentFrame, pass, 0), GL_TIMESTAMP);
+    }
+
+    public void end(int pass) {
+        glQueryCounter(query(this.currentFrame, pass, 1), GL_TIMESTAMP);
+    }
+
+    public void endFrame() {
+        this.issued[this.currentFrame] = true;
+        this.currentFrame = (this.currentFrame + 1) % this.latency;
+        this.frameCount++;
+    }
+
+    public PassStatistics getPass(int pass) {
+        return this.passes[pass];
+    }
+
+    public PassStatistics getFrame() {
+        return this.frame;
+    }
+
+    public int getFrameCount() {
+        return this.frameCount;
+    }
+
+    public int getDroppedFrames() {
+        return this.droppedFrames;
+    }
+
+    public String report(PassStatistics... cpuStatistics) {
+        String report = String.format("%-20s %8s %8s %8s %8s%n", "pass (ms)", "avg", "p50", "p95", "p99");
+        for (PassStatistics pass : this.passes) {
+            report += format(pass);
+        }
+        report += format(this.frame);
+        // CPU side timings measured by the caller, in the same table
+        for (PassStatistics statistics : cpuStatistics) {
+            report += format(statistics);
+        }
+        return report;
+    }
+
+    private String format(PassStatistics pass) {
+        return String.format("%-20s %8.3f %8.3f %8.3f %8.3f%n", pass.getName(), pass.getAverage(),
+                pass.getPercentile(50), pass.getPercentile(95), pass.getPercentile(99));
+    }
+
+    private void collect(int frame) {
+        long frameStart = glGetQueryObjectui64(query(frame, 0, 0), GL_QUERY_RESULT);
+        long frameEnd = frameStart;
+        for (int pass = 0; pass < this.passes.length; pass++) {
+            long start = glGetQueryObjectui64(query(frame, pass, 0), GL_QUERY_RESULT);
+            long end = glGetQueryObjectui64(query(frame, pass, 1), GL_QUERY_RESULT);
+            this.passes[pass].addSample((float)(end - start) / 1000000.0f);
+            frameEnd = Math.max(frameEnd, end);
+        }
+        this.frame.addSample((float)(frameEnd - frameStart) / 1000000.0f);
+    }
+
+    private int query(int frame, int pass, int edge) {
+        return this.queries[(frame * this.passes.length + pass) * 2 + edge];
+    }
+}
\ No newline at end of file
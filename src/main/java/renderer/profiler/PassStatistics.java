@@ -0,0 +1,59 @@
+package renderer.profiler;
+
+import java.util.Arrays;
+
+public class PassStatistics {
+
+    private String name;
+    private float[] samples;
+    private int sampleCount;
+    private int nextSample;
+
+    public PassStatistics(String name, int windowSize) {
+        this.name = name;
+        this.samples = new float[windowSize];
+        this.sampleCount = 0;
+        this.nextSample = 0;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public int getSampleCount() {
+        return this.sampleCount;
+    }
+
+    public void addSample(float milliseconds) {
+        this.samples[this.nextSample] = milliseconds;
+        this.nextSample = (this.nextSample + 1) % this.samples.length;
+        this.sampleCount = Math.min(this.sampleCount + 1, this.samples.length);
+    }
+
+    public void reset() {
+        this.sampleCount = 0;
+        this.nextSample = 0;
+    }
+
+    public float getLatest() {
+        if (this.sampleCount == 0) return 0.0f;
+        return this.samples[Math.floorMod(this.nextSample - 1, this.samples.length)];
+    }
+
+    public float getAverage() {
+        if (this.sampleCount == 0) return 0.0f;
+        float sum = 0.0f;
+        for (int i = 0; i < this.sampleCount; i++) {
+            sum += this.samples[i];
+        }
+        return sum / (float)this.sampleCount;
+    }
+
+    public float getPercentile(float percentile) {
+        if (this.sampleCount == 0) return 0.0f;
+        float[] sorted = Arrays.copyOf(this.samples, this.sampleCount);
+        Arrays.sort(sorted);
+        int index = (int)Math.ceil(percentile / 100.0f * (float)this.sampleCount) - 1;
+        return sorted[Math.max(0, Math.min(index, this.sampleCount - 1))];
+    }
+}
\ No newline at end of file
@@ -0,0 +1,111 @@
+package renderer.profiler;
+
+import static org.lwjgl.opengl.GL45.*;
+
+public class StepCounter {
+    private final static int BINDING = 6;
+    private final static int COUNTER_COUNT = 4;
+    private final static int WINDOW_SIZE = 240;
+
+    private PassStatistics primarySteps;
+    private PassStatistics prepassSteps;
+    private PassStatistics seededPixels;
+    private PassStatistics rejectedSeeds;
+
+    // Ring of counter buffers, read back once their fence is signaled
+    private int latency;
+    private int[] buffers;
+    private long[] fences;
+    private int[] pixelCounts;
+    private int currentFrame;
+
+    public StepCounter(int latency) {
+        this.latency = latency;
+        this.primarySteps = new PassStatistics("PRIMARY STEPS/PX", WINDOW_SIZE);
+        this.prepassSteps = new PassStatistics("PREPASS STEPS/PX", WINDOW_SIZE);
+        this.seededPixels = new PassStatistics("SEEDED PX %", WINDOW_SIZE);
+        this.rejectedSeeds = new PassStatistics("REJECTED SEEDS %", WINDOW_SIZE);
+
+        this.buffers = new int[latency];
+        this.fences = new long[latency];
+        this.pixelCounts = new int[latency];
+        glCreateBuffers(this.buffers);
+        for (int buffer : this.buffers) {
+            glNamedBufferData(buffer, COUNTER_COUNT * 4, GL_DYNAMIC_READ);
+        }
+        this.currentFrame = 0;
+    }
+
+    public void cleanup() {
+        for (long fence : this.fences) {
+            if (fence != 0) glDeleteSync(fence);
+        }
+        glDeleteBuffers(this.buffers);
+    }
+
+    public void beginFrame(int pixelCount) {
+        // Read back the oldest frame of the ring without waiting for it
+        long fence = this.fences[this.currentFrame];
+        if (fence != 0) {
+            int status = glClientWaitSync(fence, 0, 0);
+            if (status == GL_ALREADY_SIGNALED || status == GL_CONDITION_SATISFIED) {
+                collect(this.currentFrame);
+            }
+            glDeleteSync(fence);
+            this.fences[this.currentFrame] = 0;
+        }
+
+        int[] zero = {0};
+        glClearNamedBufferData(this.buffers[this.currentFrame], GL_R32UI, GL_RED_INTEGER, GL_UNSIGNED_INT, zero);
+        glBindBufferBase(GL_SHADER_STORAGE_BUFFER, BINDING, this.buffers[this.currentFrame]);
+        this.pixelCounts[this.currentFrame] = pixelCount;
+    }
+
+    public void endFrame() {
+        glMemoryBarrier(GL_BUFFER_UPDATE_BARRIER_BIT);
+        this.fences[this.currentFrame] = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+        this.currentFrame = (this.currentFrame + 1) % this.latency;
+    }
+
+    public PassStatistics getPrimarySteps() {
+        return this.primarySteps;
+    }
+
+    public PassStatistics getPrepassSteps() {
+        return this.prepassSteps;
+    }
+
+    public PassStatistics getSeededPixels() {
+        return this.seededPixels;
+    }
+
+    public PassStatistics getRejectedSeeds() {
+        return this.rejectedSeeds;
+    }
+
+    public void reset() {
+        this.primarySteps.reset();
+        this.prepassSteps.reset();
+        this.seededPixels.reset();
+        this.rejectedSeeds.reset();
+    }
+
+    public String report() {
+        String report = "";
+        for (PassStatistics statistics : new PassStatistics[] {this.primarySteps, this.prepassSteps,
+                this.seededPixels, this.rejectedSeeds}) {
+            report += String.format("%-20s %8.2f%n", statistics.getName(), statistics.getAverage());
+        }
+        return report;
+    }
+
+    private void collect(int frame) {
+        int[] counters = new int[COUNTER_COUNT];
+        glGetNamedBufferSubData(this.buffers[frame], 0, counters);
+        float pixelCount = (float)this.pixelCounts[frame];
+        this.primarySteps.addSample((float)Integer.toUnsignedLong(counters[0]) / pixelCount);
+        this.prepassSteps.addSample((float)Integer.toUnsignedLong(counters[1]) / pixelCount);
+        this.seededPixels.addSample(100.0f * (float)counters[2] / pixelCount);
+        this.rejectedSeeds.addSample(counters[2] == 0 ? 0.0f : 100.0f * (float)counters[3] / (float)counters[2]);
+    }
+}
\ No newline at end of file
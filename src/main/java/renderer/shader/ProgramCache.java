@@ -0,0 +1,130 @@
+package renderer.shader;
+
+import org.lwjgl.BufferUtils;
+import renderer.cache.DiskCache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+
+import static org.lwjgl.opengl.GL45.*;
+
+public class ProgramCache {
+    private final static String EXTENSION = ".bin";
+    // Format word and at least one byte of binary, shorter entries are truncated writes
+    private final static int MIN_ENTRY_BYTE_COUNT = 5;
+
+    private DiskCache cache;
+    private String driver;
+    private boolean enabled;
+
+    private int hitCount;
+    private int missCount;
+
+    public ProgramCache(Path directory, long maxBytes) {
+        this.driver = glGetString(GL_VENDOR) + "|" + glGetString(GL_RENDERER) + "|" + glGetString(GL_VERSION);
+
+        // Drivers without binary formats cannot reload programs
+        this.enabled = glGetInteger(GL_NUM_PROGRAM_BINARY_FORMATS) > 0;
+        if (this.enabled) {
+            try {
+                this.cache = new DiskCache(directory, EXTENSION, maxBytes);
+            } catch (IOException e) {
+                e.printStackTrace();
+                this.enabled = false;
+            }
+        }
+    }
+
+    public int getHitCount() {
+        return this.hitCount;
+    }
+
+    public int getMissCount() {
+        return this.missCount;
+    }
+
+    public boolean load(int program, String... codes) {
+        if (!this.enabled) return false;
+
+        Path file = getFile(codes);
+        if (!Files.exists(file)) {
+            this.missCount++;
+            return false;
+        }
+
+        try {
+            byte[] data = Files.readAllBytes(file);
+            if (data.length < MIN_ENTRY_BYTE_COUNT) {
+                reject(file);
+                return false;
+            }
+            ByteBuffer binary = BufferUtils.createByteBuffer(data.length - 4);
+            binary.put(data, 4, data.length - 4).flip();
+            int format = ByteBuffer.wrap(data, 0, 4).getInt();
+
+            glProgramBinary(program, format, binary);
+            if (glGetProgrami(program, GL_LINK_STATUS) == GL_FALSE) {
+                // Rejected by the driver, an unknown format also raises an error the frame must not see
+                while (glGetError() != GL_NO_ERROR);
+                reject(file);
+                return false;
+            }
+
+            this.cache.touch(file);
+            this.hitCount++;
+            return true;
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            reject(file);
+            return false;
+        }
+    }
+
+    public void store(int program, String... codes) {
+        if (!this.enabled) return;
+
+        int length = glGetProgrami(program, GL_PROGRAM_BINARY_LENGTH);
+        if (length <= 0) return;
+
+        IntBuffer format = BufferUtils.createIntBuffer(1);
+        ByteBuffer binary = BufferUtils.createByteBuffer(length);
+        glGetProgramBinary(program, null, format, binary);
+
+        byte[] data = new byte[length + 4];
+        ByteBuffer.wrap(data, 0, 4).putInt(format.get(0));
+        binary.get(data, 4, length);
+
+        try {
+            Path file = getFile(codes);
+            Files.write(file, data);
+            this.cache.evict(file);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void reject(Path file) {
+        // Evict the entry, the program is linked from source and stored again
+        this.missCount++;
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private Path getFile(String... codes) {
+        MessageDigest digest = DiskCache.createDigest();
+        digest.update(this.driver.getBytes(StandardCharsets.UTF_8));
+        for (String code : codes) {
+            digest.update((byte)0);
+            digest.update(code.getBytes(StandardCharsets.UTF_8));
+        }
+        return this.cache.getFile(digest);
+    }
+}
\ No newline at end of file
@@ -1,11 +1,19 @@
-package renderer.shader;
-
-import static org.lwjgl.opengl.GL45.*;
-
-public class RenderShader extends Shader {
-    public RenderShader(String vertexCode, String fragmentCode) throws Exception {
-        addShader(vertexCode, GL_VERTEX_SHADER);
-        addShader(fragmentCode, GL_FRAGMENT_SHADER);
-        link();
-    }
+package renderer.shader;
+
+import static org.lwjgl.opengl.GL45.*;
+
+public class RenderShader extends Shader {
+    public RenderShader(String vertexCode, String fragmentCode) throws Exception {
+        this(vertexCode, fragmentCode, null);
+    }
+
+    public RenderShader(String vertexCode, String fragmentCode, ProgramCache cache) throws Exception {
+        if (cache != null && cache.load(getProgram(), vertexCode, fragmentCode)) return;
+
+        addShader(vertexCode, GL_VERTEX_SHADER);
+        addShader(fragmentCode, GL_FRAGMENT_SHADER);
+        link();
+
+        if (cache != null) cache.store(getProgram(), vertexCode, fragmentCode);
+    }
 }
\ No newline at end of file
@@ -1,115 +1,205 @@
-package renderer.shader;
-
-import renderer.RenderShapeType;
-
-import java.io.IOException;
-import java.net.URISyntaxException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.util.HashMap;
-import java.util.Map;
-
-public class ShaderGenerator {
-    // Tokens
-    private final static String SHAPE_SD_FUNCTIONS_TOKEN = "#SHAPE_SD_FUNCTIONS_TOKEN";
-    private final static String MAP_SD_FUNCTION_TOKEN    = "#MAP_SD_FUNCTION_TOKEN";
-
-    // Known files
-    public final static String SCENE_FILE           = "scene.glsl";
-    public final static String DIRECT_LIGHTING_FILE = "direct_lighting.glsl";
-    public final static String GBUFFER_FILE         = "gbuffer.comp";
-    public final static String QUAD_VERTEX_FILE     = "quad.vert";
-    public final static String QUAD_FRAGMENT_FILE   = "quad.frag";
-
-    private Map<Integer, RenderShapeType> shapeTypes;
-    private Map<String, String> codes;
-
-    public ShaderGenerator() {
-        this.shapeTypes = new HashMap<>();
-        this.codes = new HashMap<>();
-
-        String commonFiles[] = {
-                SCENE_FILE,
-                DIRECT_LIGHTING_FILE
-        };
-        for (String files : commonFiles) {
-            readRawCode(files);
-        }
-    }
-
-    public void registerShapeType(RenderShapeType shapeType) {
-        this.shapeTypes.put(shapeType.getID(), shapeType);
-    }
-
-    public String getCode(String file) {
-        String code = readRawCode(file);
-        code = processTokens(code);
-        code = processIncludes(code);
-        return code;
-    }
-
-    private String readRawCode(String file) {
-        if (this.codes.containsKey(file)) {
-            return this.codes.get(file);
-        } else {
-            try {
-                String code = Files.readString(Path.of(getClass().getClassLoader().getResource(file).toURI()), StandardCharsets.UTF_8);
-                this.codes.put(file, code);
-                return code;
-            } catch(IOException | URISyntaxException e) {
-                e.printStackTrace();
-                return null;
-            }
-        }
-    }
-
-    private String processTokens(String code) {
-        if (code.contains(SHAPE_SD_FUNCTIONS_TOKEN)) {
-            code = code.replace(SHAPE_SD_FUNCTIONS_TOKEN, getShapeSDFunctionsCode());
-        }
-
-        if (code.contains(MAP_SD_FUNCTION_TOKEN)) {
-            code = code.replace(MAP_SD_FUNCTION_TOKEN, getMapSDFunction());
-        }
-
-        return code;
-    }
-
-    private String processIncludes(String code) {
-        for (Map.Entry<String, String> entry : this.codes.entrySet()) {
-            String includeToken = "#include <" + entry.getKey() + ">";
-            if (code.contains(includeToken)) {
-                code = code.replace(includeToken, getCode(entry.getKey()));
-            }
-        }
-        return code;
-    }
-
-    private String getShapeSDFunctionsCode() {
-        String code = "";
-        for (RenderShapeType shapeType : this.shapeTypes.values()) {
-            code += "float sd" + shapeType.getID() + "(in vec3 p, in Shape param) {\n";
-            code += shapeType.getCode() + "\n";
-            code += "}\n";
-        }
-        return code;
-    }
-
-    private String getMapSDFunction() {
-        String code = "float sdShape(in vec3 p, in Shape param) {\n";
-        int index = 0;
-        for (RenderShapeType shapeType : this.shapeTypes.values()) {
-            if (index == 0) {
-                code += String.format("if (param.type == %d) return sd%d(p, param);\n",
-                        shapeType.getID(), shapeType.getID());
-            } else {
-                code += String.format("else if (param.type == %d) return sd%d(p, param);\n",
-                        shapeType.getID(), shapeType.getID());
-            }
-            index++;
-        }
-        code += "return 0.0;\n}\n";
-        return code;
-    }
+package renderer.shader;
+
+import org.joml.Vector3f;
+import renderer.RenderShapeParameters;
+import renderer.RenderShapeType;
+import renderer.entity.Shape;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class ShaderGenerator {
+    // Tokens
+    private final static String SHAPE_SD_FUNCTIONS_TOKEN = "#SHAPE_SD_FUNCTIONS_TOKEN";
+    private final static String MAP_SD_FUNCTION_TOKEN    = "#MAP_SD_FUNCTION_TOKEN";
+    private final static String COMPILED_SCENE_TOKEN     = "#COMPILED_SCENE_TOKEN";
+
+    // Known files
+    public final static String SCENE_FILE            = "scene.glsl";
+    public final static String DIRECT_LIGHTING_FILE  = "direct_lighting.glsl";
+    public final static String GBUFFER_ENCODING_FILE = "gbuffer_encoding.glsl";
+    public final static String GBUFFER_FILE          = "gbuffer.comp";
+    public final static String QUAD_VERTEX_FILE      = "quad.vert";
+    public final static String QUAD_FRAGMENT_FILE    = "quad.frag";
+
+    private Map<Integer, RenderShapeType> shapeTypes;
+    private Map<String, String> codes;
+
+    // Compiled scene (null when using the generic map)
+    private Map<Integer, RenderShapeType> compiledShapeTypes;
+    private String compiledSceneCode;
+
+    public ShaderGenerator() {
+        this.shapeTypes = new TreeMap<>();
+        this.codes = new HashMap<>();
+
+        String commonFiles[] = {
+                SCENE_FILE,
+                DIRECT_LIGHTING_FILE,
+                GBUFFER_ENCODING_FILE
+        };
+        for (String files : commonFiles) {
+            readRawCode(files);
+        }
+    }
+
+    public void registerShapeType(RenderShapeType shapeType) {
+        this.shapeTypes.put(shapeType.getID(), shapeType);
+    }
+
+    public void setCompiledScene(Collection<Shape> shapes) {
+        if (shapes == null) {
+            this.compiledShapeTypes = null;
+            this.compiledSceneCode = null;
+            return;
+        }
+
+        // Unroll every shape with its parameters baked as constants
+        // Built aside, a rejected parameter leaves the previous scene in place
+        Map<Integer, RenderShapeType> compiledShapeTypes = new TreeMap<>();
+        StringBuilder code = new StringBuilder();
+        code.append("#define COMPILED_SCENE\n");
+        code.append("float mapShape(in vec3 p, out int shapeID) {\n");
+        code.append("float sd = MAX_DISTANCE;\n");
+        code.append("float s;\n");
+        code.append("shapeID = 0;\n");
+        Vector3f position = new Vector3f();
+        RenderShapeParameters parameters = new RenderShapeParameters();
+        for (Shape shape : shapes) {
+            if (shape.getType() == null) continue;
+            RenderShapeType type = shape.getType();
+            shape.getPosition(position);
+            shape.getParameters(parameters);
+            compiledShapeTypes.put(type.getID(), type);
+            String param = String.format("Shape(%d, %d, %d, %d, %s, %s, %s)",
+                    type.getID(),
+                    shape.getMaterial() == null ? 0 : shape.getMaterial().getIndex(),
+                    shape.getInstanceOffset(),
+                    shape.getInstanceCount(),
+                    vec3(position.x, position.y, position.z),
+                    vec4(parameters.f0.x, parameters.f0.y, parameters.f0.z, parameters.f0.w),
+                    vec4(parameters.f1.x, parameters.f1.y, parameters.f1.z, parameters.f1.w));
+            if (shape.getInstanceCount() == 0) {
+                code.append(String.format("if ((s = sd%d(p - %s, %s)) < sd) { sd = s; shapeID = %d; }\n",
+                        type.getID(),
+                        vec3(position.x, position.y, position.z),
+                        param,
+                        shape.getIndex()));
+            } else {
+                // Instances stay in the storage buffer
+                code.append(String.format("if ((s = sdSceneShape(p, %s)) < sd) { sd = s; shapeID = %d; }\n",
+                        param,
+                        shape.getIndex()));
+            }
+        }
+        code.append("return sd;\n}\n");
+        this.compiledShapeTypes = compiledShapeTypes;
+        this.compiledSceneCode = code.toString();
+    }
+
+    public boolean isSceneCompiled() {
+        return this.compiledSceneCode != null;
+    }
+
+    public String getCode(String file) {
+        String code = readRawCode(file);
+        code = processTokens(code);
+        code = processIncludes(code);
+        return code;
+    }
+
+    private String readRawCode(String file) {
+        if (this.codes.containsKey(file)) {
+            return this.codes.get(file);
+        } else {
+            // Read as a stream so resources packaged in a jar work too
+            try (InputStream stream = getClass().getClassLoader().getResourceAsStream(file)) {
+                String code = new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+                this.codes.put(file, code);
+                return code;
+            } catch(IOException e) {
+                e.printStackTrace();
+                return null;
+            }
+        }
+    }
+
+    private String processTokens(String code) {
+        if (code.contains(SHAPE_SD_FUNCTIONS_TOKEN)) {
+            code = code.replace(SHAPE_SD_FUNCTIONS_TOKEN, getShapeSDFunctionsCode());
+        }
+
+        if (code.contains(MAP_SD_FUNCTION_TOKEN)) {
+            code = code.replace(MAP_SD_FUNCTION_TOKEN, getMapSDFunction());
+        }
+
+        if (code.contains(COMPILED_SCENE_TOKEN)) {
+            code = code.replace(COMPILED_SCENE_TOKEN, this.compiledSceneCode == null ? "" : this.compiledSceneCode);
+        }
+
+        return code;
+    }
+
+    private String processIncludes(String code) {
+        for (Map.Entry<String, String> entry : this.codes.entrySet()) {
+            String includeToken = "#include <" + entry.getKey() + ">";
+            if (code.contains(includeToken)) {
+                code = code.replace(includeToken, getCode(entry.getKey()));
+            }
+        }
+        return code;
+    }
+
+    private String getShapeSDFunctionsCode() {
+        String code = "";
+        for (RenderShapeType shapeType : getActiveShapeTypes()) {
+            code += "float sd" + shapeType.getID() + "(in vec3 p, in Shape param) {\n";
+            code += shapeType.getCode() + "\n";
+            code += "}\n";
+        }
+        return code;
+    }
+
+    private String getMapSDFunction() {
+        String code = "float sdShape(in vec3 p, in Shape param) {\n";
+        int index = 0;
+        for (RenderShapeType shapeType : getActiveShapeTypes()) {
+            if (index == 0) {
+                code += String.format("if (param.type == %d) return sd%d(p, param);\n",
+                        shapeType.getID(), shapeType.getID());
+            } else {
+                code += String.format("else if (param.type == %d) return sd%d(p, param);\n",
+                        shapeType.getID(), shapeType.getID());
+            }
+            index++;
+        }
+        code += "return 0.0;\n}\n";
+        return code;
+    }
+
+    private Collection<RenderShapeType> getActiveShapeTypes() {
+        // Compiled scenes leave out the types without instances
+        return this.compiledShapeTypes == null ? this.shapeTypes.values() : this.compiledShapeTypes.values();
+    }
+
+    private static String vec3(float x, float y, float z) {
+        return "vec3(" + literal(x) + ", " + literal(y) + ", " + literal(z) + ")";
+    }
+
+    private static String vec4(float x, float y, float z, float w) {
+        return "vec4(" + literal(x) + ", " + literal(y) + ", " + literal(z) + ", " + literal(w) + ")";
+    }
+
+    private static String literal(float value) {
+        // GLSL has no literal for infinity or NaN, such a shape cannot be baked
+        if (!Float.isFinite(value)) {
+            throw new IllegalArgumentException("cannot compile non-finite shape parameter " + value);
+        }
+        return Float.toString(value);
+    }
 }
\ No newline at end of file
@@ -1,56 +1,79 @@
-package shape;
-
-import renderer.RenderContext;
-import renderer.RenderShapeType;
-import org.joml.Vector3f;
-import renderer.RenderShapeParameters;
-
-public class BoxFrameShape extends Shape {
-
-    public static class Type implements RenderShapeType {
-
-        @Override
-        public int getID() {
-            return 2;
-        }
-
-        @Override
-        public String getCode() {
-            String code = "";
-            code += "p = abs(p) - param.f1.xyz;\n";
-            code += "vec3 q = abs(p + param.f0.w) - param.f0.w;\n";
-            code += "return min(min(\n";
-            code += "length(max(vec3(p.x, q.y, q.z), 0.0)) + min(max(p.x, max(q.y, q.z)), 0.0),\n";
-            code += "length(max(vec3(q.x, p.y, q.z), 0.0)) + min(max(q.x, max(p.y, q.z)), 0.0)),\n";
-            code += "length(max(vec3(q.x, q.y, p.z), 0.0)) + min(max(q.x, max(q.y, p.z)), 0.0));";
-            return code;
-        }
-
-        @Override
-        public float getDistance(Vector3f p, RenderShapeParameters param) {
-            return 0;
-        }
-
-        @Override
-        public float getSafeDistance() {
-            return 0;
-        }
-    }
-
-    private static RenderShapeType type;
-    public static void register(RenderContext context) {
-        type = new BoxFrameShape.Type();
-        context.registerShapeType(type);
-    }
-
-    private Vector3f box;
-    private float width;
-
-    public BoxFrameShape(RenderContext context, Vector3f box, float width) {
-        super(context, BoxFrameShape.type);
-        this.box = box;
-        this.width = width;
-        this.shape.setF0(0, 0, 0, this.width);
-        this.shape.setF1(this.box.x, this.box.y, this.box.z, 0);
-    }
+package shape;
+
+import renderer.RenderContext;
+import renderer.RenderShapeType;
+import org.joml.Vector3f;
+import renderer.RenderShapeParameters;
+
+public class BoxFrameShape extends Shape {
+
+    public static class Type implements RenderShapeType {
+
+        @Override
+        public int getID() {
+            return 2;
+        }
+
+        @Override
+        public String getCode() {
+            String code = "";
+            code += "p = abs(p) - param.f1.xyz;\n";
+            code += "vec3 q = abs(p + param.f0.w) - param.f0.w;\n";
+            code += "return min(min(\n";
+            code += "length(max(vec3(p.x, q.y, q.z), 0.0)) + min(max(p.x, max(q.y, q.z)), 0.0),\n";
+            code += "length(max(vec3(q.x, p.y, q.z), 0.0)) + min(max(q.x, max(p.y, q.z)), 0.0)),\n";
+            code += "length(max(vec3(q.x, q.y, p.z), 0.0)) + min(max(q.x, max(q.y, p.z)), 0.0));";
+            return code;
+        }
+
+        @Override
+        public float getDistance(Vector3f p, RenderShapeParameters param) {
+            float w = param.f0.w;
+            float px = Math.abs(p.x) - param.f1.x;
+            float py = Math.abs(p.y) - param.f1.y;
+            float pz = Math.abs(p.z) - param.f1.z;
+            float qx = Math.abs(px + w) - w;
+            float qy = Math.abs(py + w) - w;
+            float qz = Math.abs(pz + w) - w;
+            return Math.min(Math.min(
+                    box(px, qy, qz),
+                    box(qx, py, qz)),
+                    box(qx, qy, pz));
+        }
+
+        @Override
+        public float getSafeDistance() {
+            return 0;
+        }
+
+        @Override
+        public void getBounds(RenderShapeParameters param, Vector3f min, Vector3f max) {
+            max.set(param.f1.x, param.f1.y, param.f1.z);
+            min.set(max).negate();
+        }
+
+        private static float box(float x, float y, float z) {
+            float ox = Math.max(x, 0.0f);
+            float oy = Math.max(y, 0.0f);
+            float oz = Math.max(z, 0.0f);
+            return (float)Math.sqrt(ox * ox + oy * oy + oz * oz) + Math.min(Math.max(x, Math.max(y, z)), 0.0f);
+        }
+    }
+
+    private static RenderShapeType type;
+    public static void register(RenderContext context) {
+        type = new BoxFrameShape.Type();
+        context.registerShapeType(type);
+    }
+
+    private Vector3f box;
+    private float width;
+
+    public BoxFrameShape(RenderContext context, Vector3f box, float width) {
+        super(context, BoxFrameShape.type);
+        this.box = box;
+        this.width = width;
+        this.shape.setF0(0, 0, 0, this.width);
+        this.shape.setF1(this.box.x, this.box.y, this.box.z, 0);
+    }
 }
\ No newline at end of file
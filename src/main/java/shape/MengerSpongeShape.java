@@ -1,79 +1,113 @@
-package shape;
-
-import org.joml.Vector3f;
-import renderer.RenderContext;
-import renderer.RenderShapeParameters;
-import renderer.RenderShapeType;
-
-public class MengerSpongeShape extends Shape {
-
-    public static class Type implements RenderShapeType {
-
-        @Override
-        public int getID() {
-            return 7;
-        }
-
-        @Override
-        public String getCode() {
-            String code = "";
-            code += "const float scale = 30.0f;\n";
-            code += "vec3 q = abs(p / scale) - vec3(0, -0.5, 0) - vec3(5, 0.6, 5);\n";
-            code += "float d = length(max(q, 0)) + min(max(q.x, max(q.y, q.z)), 0);\n";
-            code += "float s = 2.67;\n";
-            code += "for (int m = 0; m < 6; m++) {\n";
-            code += "    vec3 a = mod(q * s, 2.0) - 1.0;\n";
-            code += "    s *= 3.0;\n";
-            code += "    vec3 r = abs(1.0 - 3.0 * abs(a));\n";
-            code += "    float da = max(r.x, r.y);\n";
-            code += "    float db = max(r.y, r.z);\n";
-            code += "    float dc = max(r.z, r.x);\n";
-            code += "    float c = (min(da, min(db, dc)) - 1.0) / s;\n";
-            code += "    d = max(d, c);\n";
-            code += "}\n";
-            code += "return d * scale;\n";
-            return code;
-
-//            code += "vec3 q = p;\n";
-//            code += "q.xz = mod( q.xz+1.0, 2.0 ) -1.0;\n";
-//            code += "vec3 w = abs(q) - vec3(1);\n";
-//            code += "float d = length(max(w, 0)) + min(max(w.x, max(w.y, w.z)), 0);\n";
-//            code += "float s = 1.0;\n";
-//            code += "for( int m=0; m<6; m++ )\n";
-//            code += "{\n";
-//            code += "    float h = float(m)/6.0;\n";
-//            code += "    p =  q - 0.5*sin( abs(p.y) + float(m)*3.0+vec3(0.0,3.0,1.0));\n";
-//            code += "   vec3 a = mod( p*s, 2.0 )-1.0;\n";
-//            code += "   s *= 3.0;\n";
-//            code += "   vec3 r = abs(1.0 - 3.0*abs(a));\n";
-//            code += "   float da = max(r.x,r.y);\n";
-//            code += "   float db = max(r.y,r.z);\n";
-//            code += "   float dc = max(r.z,r.x);\n";
-//            code += "   float c = (min(da,min(db,dc))-1.0)/s;\n";
-//            code += "   d = max( c, d );\n";
-//            code += "}\n";
-//            code += "return d;\n";
-//            return code;
-        }
-
-        @Override
-        public float getDistance(Vector3f p, RenderShapeParameters param) {
-            return 0;
-        }
-
-        @Override
-        public float getSafeDistance() {
-            return 0;
-        }
-    }
-
-    private static RenderShapeType type;
-    public static void register(RenderContext context) {
-        type = new MengerSpongeShape.Type();
-        context.registerShapeType(type);
-    }
-
-    public MengerSpongeShape(RenderContext context) {
-        super(context, MengerSpongeShape.type);
-    }
+package shape;
+
+import org.joml.Vector3f;
+import renderer.RenderContext;
+import renderer.RenderShapeParameters;
+import renderer.RenderShapeType;
+
+public class MengerSpongeShape extends Shape {
+
+    public static class Type implements RenderShapeType {
+
+        @Override
+        public int getID() {
+            return 7;
+        }
+
+        @Override
+        public String getCode() {
+            String code = "";
+            code += "const float scale = 30.0f;\n";
+            code += "vec3 q = abs(p / scale) - vec3(0, -0.5, 0) - vec3(5, 0.6, 5);\n";
+            code += "float d = length(max(q, 0)) + min(max(q.x, max(q.y, q.z)), 0);\n";
+            code += "float s = 2.67;\n";
+            code += "for (int m = 0; m < 6; m++) {\n";
+            code += "    vec3 a = mod(q * s, 2.0) - 1.0;\n";
+            code += "    s *= 3.0;\n";
+            code += "    vec3 r = abs(1.0 - 3.0 * abs(a));\n";
+            code += "    float da = max(r.x, r.y);\n";
+            code += "    float db = max(r.y, r.z);\n";
+            code += "    float dc = max(r.z, r.x);\n";
+            code += "    float c = (min(da, min(db, dc)) - 1.0) / s;\n";
+            code += "    d = max(d, c);\n";
+            code += "}\n";
+            code += "return d * scale;\n";
+            return code;
+
+//            code += "vec3 q = p;\n";
+//            code += "q.xz = mod( q.xz+1.0, 2.0 ) -1.0;\n";
+//            code += "vec3 w = abs(q) - vec3(1);\n";
+//            code += "float d = length(max(w, 0)) + min(max(w.x, max(w.y, w.z)), 0);\n";
+//            code += "float s = 1.0;\n";
+//            code += "for( int m=0; m<6; m++ )\n";
+//            code += "{\n";
+//            code += "    float h = float(m)/6.0;\n";
+//            code += "    p =  q - 0.5*sin( abs(p.y) + float(m)*3.0+vec3(0.0,3.0,1.0));\n";
+//            code += "   vec3 a = mod( p*s, 2.0 )-1.0;\n";
+//            code += "   s *= 3.0;\n";
+//            code += "   vec3 r = abs(1.0 - 3.0*abs(a));\n";
+//            code += "   float da = max(r.x,r.y);\n";
+//            code += "   float db = max(r.y,r.z);\n";
+//            code += "   float dc = max(r.z,r.x);\n";
+//            code += "   float c = (min(da,min(db,dc))-1.0)/s;\n";
+//            code += "   d = max( c, d );\n";
+//            code += "}\n";
+//            code += "return d;\n";
+//            return code;
+        }
+
+        @Override
+        public float getDistance(Vector3f p, RenderShapeParameters param) {
+            final float scale = 30.0f;
+            float qx = Math.abs(p.x / scale) - 5.0f;
+            float qy = Math.abs(p.y / scale) - 0.1f;
+            float qz = Math.abs(p.z / scale) - 5.0f;
+            float ox = Math.max(qx, 0.0f);
+            float oy = Math.max(qy, 0.0f);
+            float oz = Math.max(qz, 0.0f);
+            float d = (float)Math.sqrt(ox * ox + oy * oy + oz * oz) + Math.min(Math.max(qx, Math.max(qy, qz)), 0.0f);
+            float s = 2.67f;
+            for (int m = 0; m < 6; m++) {
+                float ax = mod(qx * s, 2.0f) - 1.0f;
+                float ay = mod(qy * s, 2.0f) - 1.0f;
+                float az = mod(qz * s, 2.0f) - 1.0f;
+                s *= 3.0f;
+                float rx = Math.abs(1.0f - 3.0f * Math.abs(ax));
+                float ry = Math.abs(1.0f - 3.0f * Math.abs(ay));
+                float rz = Math.abs(1.0f - 3.0f * Math.abs(az));
+                float da = Math.max(rx, ry);
+                float db = Math.max(ry, rz);
+                float dc = Math.max(rz, rx);
+                float c = (Math.min(da, Math.min(db, dc)) - 1.0f) / s;
+                d = Math.max(d, c);
+            }
+            return d * scale;
+        }
+
+        @Override
+        public float getSafeDistance() {
+            return 0;
+        }
+
+        @Override
+        public void getBounds(RenderShapeParameters param, Vector3f min, Vector3f max) {
+            max.set(150.0f, 3.0f, 150.0f);
+            min.set(max).negate();
+        }
+
+        private static float mod(float x, float y) {
+            // GLSL mod (result has the sign of y)
+            return x - y * (float)Math.floor(x / y);
+        }
+    }
+
+    private static RenderShapeType type;
+    public static void register(RenderContext context) {
+        type = new MengerSpongeShape.Type();
+        context.registerShapeType(type);
+    }
+
+    public MengerSpongeShape(RenderContext context) {
+        super(context, MengerSpongeShape.type);
+    }
 }
\ No newline at end of file
@@ -1,52 +1,68 @@
-package shape;
-
-import renderer.RenderContext;
-import renderer.RenderShapeType;
-import org.joml.Vector3f;
-import renderer.RenderShapeParameters;
-
-public class RoundBoxShape extends Shape {
-
-    public static class Type implements RenderShapeType {
-
-        @Override
-        public int getID() {
-            return 1;
-        }
-
-        @Override
-        public String getCode() {
-            String code = "";
-            code += "vec3 q = abs(p) - param.f1.xyz;\n";
-            code += "return length(max(q, 0.0)) + min(max(q.x, max(q.y, q.z)), 0.0) - param.f0.w;";
-            return code;
-        }
-
-        @Override
-        public float getDistance(Vector3f p, RenderShapeParameters param) {
-            return 0;
-        }
-
-        @Override
-        public float getSafeDistance() {
-            return 0;
-        }
-    }
-
-    private static Type type;
-    public static void register(RenderContext context) {
-        type = new RoundBoxShape.Type();
-        context.registerShapeType(type);
-    }
-
-    private Vector3f box;
-    private float radius;
-
-    public RoundBoxShape(RenderContext context, Vector3f box, float radius) {
-        super(context, RoundBoxShape.type);
-        this.box = box;
-        this.radius = radius;
-        this.shape.setF0(0, 0, 0, this.radius);
-        this.shape.setF1(this.box.x, this.box.y, this.box.z, 0);
-    }
+package shape;
+
+import renderer.RenderContext;
+import renderer.RenderShapeType;
+import org.joml.Vector3f;
+import renderer.RenderShapeParameters;
+
+public class RoundBoxShape extends Shape {
+
+    public static class Type implements RenderShapeType {
+
+        @Override
+        public int getID() {
+            return 1;
+        }
+
+        @Override
+        public String getCode() {
+            String code = "";
+            code += "vec3 q = abs(p) - param.f1.xyz;\n";
+            code += "return length(max(q, 0.0)) + min(max(q.x, max(q.y, q.z)), 0.0) - param.f0.w;";
+            return code;
+        }
+
+        @Override
+        public float getDistance(Vector3f p, RenderShapeParameters param) {
+            float qx = Math.abs(p.x) - param.f1.x;
+            float qy = Math.abs(p.y) - param.f1.y;
+            float qz = Math.abs(p.z) - param.f1.z;
+            return outside(qx, qy, qz) + Math.min(Math.max(qx, Math.max(qy, qz)), 0.0f) - param.f0.w;
+        }
+
+        @Override
+        public float getSafeDistance() {
+            return 0;
+        }
+
+        @Override
+        public void getBounds(RenderShapeParameters param, Vector3f min, Vector3f max) {
+            max.set(param.f1.x, param.f1.y, param.f1.z).add(param.f0.w, param.f0.w, param.f0.w);
+            min.set(max).negate();
+        }
+
+        private static float outside(float x, float y, float z) {
+            float ox = Math.max(x, 0.0f);
+            float oy = Math.max(y, 0.0f);
+            float oz = Math.max(z, 0.0f);
+            return (float)Math.sqrt(ox * ox + oy * oy + oz * oz);
+        }
+    }
+
+    private static Type type;
+    public static void register(RenderContext context) {
+        type = new RoundBoxShape.Type();
+        context.registerShapeType(type);
+    }
+
+    private Vector3f box;
+    private float radius;
+
+    public RoundBoxShape(RenderContext context, Vector3f box, float radius) {
+        super(context, RoundBoxShape.type);
+        this.box = box;
+        this.radius = radius;
+        this.shape.setF0(0, 0, 0, this.radius);
+        this.shape.setF1(this.box.x, this.box.y, this.box.z, 0);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,60 @@
+#version 450 core
+
+#include <scene.glsl>
+
+// Margin kept in front of the conservative distance
+#define PREPASS_SAFETY 0.9
+
+layout(location = 0) out float prepassDepth;
+
+layout(location = 1) uniform vec3 eye;
+layout(location = 2) uniform ivec2 resolution;
+layout(location = 3) uniform int prepassScale;
+layout(location = 5) uniform int collectStepStatistics;
+
+layout(std430, binding = 6) buffer StepStatistics {
+	uint primarySteps;
+	uint prepassSteps;
+	uint seededPixels;
+	uint rejectedSeeds;
+};
+
+in mat4 invVPMatrix;
+
+vec3 pixelDirection(in vec2 pixel) {
+	const vec2 ndc = pixel / vec2(resolution) * 2.0 - 1.0;
+	const vec4 ptransform = invVPMatrix * vec4(ndc, 1, 1);
+	return normalize((ptransform / ptransform.w).xyz - eye);
+}
+
+void main() {
+	// Full resolution pixels covered by this texel
+	const vec2 tileMin = vec2(ivec2(gl_FragCoord.xy) * prepassScale);
+	const vec2 tileMax = min(tileMin + float(prepassScale), vec2(resolution));
+	const vec3 dir     = pixelDirection((tileMin + tileMax) * 0.5);
+	
+	// Cone containing the primary ray of every pixel in the tile, two rays
+	// at depth t are at most spread * t apart
+	float spread = distance(dir, pixelDirection(tileMin));
+	spread = max(spread, distance(dir, pixelDirection(vec2(tileMax.x, tileMin.y))));
+	spread = max(spread, distance(dir, pixelDirection(vec2(tileMin.x, tileMax.y))));
+	spread = max(spread, distance(dir, pixelDirection(tileMax)));
+	
+	// Cone march, every step stays inside the free sphere for all rays
+	float t = EPSILON;
+	int steps = 0;
+	for (int step = 0; step < MAX_RAYMARCH_STEP; step++) {
+		steps++;
+		const float sd      = map(eye + dir * t);
+		const float advance = (sd - spread * t) / (1.0 + spread);
+		if (advance < spread * t + EPSILON) break;
+		t += advance;
+		if (t > MAX_DISTANCE) break;
+	}
+	
+	prepassDepth = max(EPSILON, min(t, MAX_DISTANCE) * PREPASS_SAFETY);
+	
+	if (collectStepStatistics != 0) {
+		atomicAdd(prepassSteps, uint(steps));
+	}
+}
\ No newline at end of file
@@ -0,0 +1,36 @@
+/* ------------- GBUFFER ENCODING --------------- */
+
+// Attachments
+//   depth    R32F        distance along the primary ray
+//   normal   RG16_SNORM  octahedral normal, ray direction for the sky
+//   material R16UI       material index, SKY_MATERIAL for the sky
+
+#define SKY_MATERIAL 0xFFFFu
+
+vec2 octahedralWrap(in vec2 v) {
+	return (1.0 - abs(v.yx)) * vec2(v.x >= 0.0 ? 1.0 : -1.0, v.y >= 0.0 ? 1.0 : -1.0);
+}
+
+vec2 encodeNormal(in vec3 n) {
+	n /= abs(n.x) + abs(n.y) + abs(n.z);
+	return n.z >= 0.0 ? n.xy : octahedralWrap(n.xy);
+}
+
+vec3 decodeNormal(in vec2 e) {
+	vec3 n = vec3(e.xy, 1.0 - abs(e.x) - abs(e.y));
+	const float t = clamp(-n.z, 0.0, 1.0);
+	n.x += n.x >= 0.0 ? -t : t;
+	n.y += n.y >= 0.0 ? -t : t;
+	return normalize(n);
+}
+
+// Same ray as the gbuffer pass for the center of a pixel
+vec3 primaryRayDirection(in ivec2 pixel, in ivec2 size, in mat4 invVPMatrix, in vec3 eye) {
+	const vec2 ndc = (vec2(pixel) + 0.5) / vec2(size) * 2.0 - 1.0;
+	const vec4 ptransform = invVPMatrix * vec4(ndc, 1, 1);
+	return normalize((ptransform / ptransform.w).xyz - eye);
+}
+
+vec3 reconstructPosition(in ivec2 pixel, in ivec2 size, in float depth, in mat4 invVPMatrix, in vec3 eye) {
+	return eye + primaryRayDirection(pixel, size, invVPMatrix, eye) * depth;
+}
\ No newline at end of file
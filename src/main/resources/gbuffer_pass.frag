@@ -1,30 +1,132 @@
-#version 450 core
-
-#include <scene.glsl>
-
-layout(location = 0) out vec4 positionDepthTex;
-layout(location = 1) out vec4 normalMaterialTex;
-
-layout(location = 1) uniform vec3 eye;
-
-in vec2 pos;
-in mat4 invVPMatrix;
-
-void main() {
-	// Get direction vector
-	vec4 ptransform = invVPMatrix * vec4(pos, 1, 1);
-	vec3 dir = normalize((ptransform / ptransform.w).xyz - eye);
-	
-	// Primary ray
-	HitInfo hit;
-	hit = intersectScene(eye, dir, MAX_DISTANCE);
-	if (hit.intersect) {		
-		// Write images
-		positionDepthTex  = vec4(hit.position, hit.depth);
-		normalMaterialTex = vec4(hit.normal, hit.materialID); 
-	} else {
-		// Write images
-		positionDepthTex  = vec4(0, 0, 0, MAX_DISTANCE);
-		normalMaterialTex = vec4(dir, -1);
-	}
+#version 450 core
+
+#define TILE_SHAPE_LISTS
+#define DISTANCE_CLIPMAP
+#define CLIPMAP_FAR_FIELD
+#include <scene.glsl>
+#include <gbuffer_encoding.glsl>
+
+// Rays start this fraction of the seeded depth before the old hit
+#define SEED_MARGIN 0.05
+// Largest neighbourhood searched for discontinuities in texels, faster motion is not seeded
+#define SEED_MAX_RADIUS 8
+
+layout(location = 0) out float depthTex;
+layout(location = 1) out vec2 normalTex;
+layout(location = 2) out uint materialTex;
+
+layout(location = 0) uniform mat4 VPMatrix;
+layout(location = 1) uniform vec3 eye;
+layout(location = 3) uniform int prepassScale;
+layout(location = 5) uniform int collectStepStatistics;
+layout(location = 6) uniform int temporalSeed;
+layout(location = 7) uniform mat4 oldInvVPMatrix;
+layout(location = 8) uniform vec3 oldEye;
+
+layout(binding = 0, location = 4) uniform sampler2D prepassTex;
+layout(binding = 1, location = 9) uniform sampler2D oldDepthTex;
+
+layout(std430, binding = 6) buffer StepStatistics {
+	uint primarySteps;
+	uint prepassSteps;
+	uint seededPixels;
+	uint rejectedSeeds;
+};
+
+in vec2 pos;
+in mat4 invVPMatrix;
+
+// Depth of the previous frame surface seen through this pixel, 0 when unusable
+float temporalSeedDepth(in ivec2 pixel, in vec3 dir) {
+	const ivec2 size   = textureSize(oldDepthTex, 0);
+	const vec2 center  = vec2(pixel) + 0.5;
+	
+	// Find the previous pixel whose surface lands on this one
+	vec2 oldCenter = center;
+	vec3 oldPosition;
+	vec2 error;
+	ivec2 texel;
+	for (int i = 0; i < 3; i++) {
+		texel = ivec2(floor(oldCenter));
+		if (any(lessThan(texel, ivec2(0))) || any(greaterThanEqual(texel, size))) return 0.0;
+		const float oldDepth = texelFetch(oldDepthTex, texel, 0).x;
+		if (oldDepth >= MAX_DISTANCE) return 0.0;
+		oldPosition = reconstructPosition(texel, size, oldDepth, oldInvVPMatrix, oldEye);
+		
+		const vec4 clip = VPMatrix * vec4(oldPosition, 1.0);
+		if (clip.w <= 0.0) return 0.0;
+		error = center - (clip.xy / clip.w * 0.5 + 0.5) * vec2(size);
+		oldCenter += error;
+	}
+	if (any(greaterThan(abs(error), vec2(1.0)))) return 0.0;
+	
+	// Reject depth discontinuities, surfaces may be disoccluded there. The neighbourhood
+	// grows with the reprojection displacement, near objects shift further than the pixel
+	const int radius = int(ceil(length(center - oldCenter))) + 1;
+	if (radius > SEED_MAX_RADIUS) return 0.0;
+	float minDepth = MAX_DISTANCE;
+	float maxDepth = 0.0;
+	for (int y = -radius; y <= radius; y++) {
+		for (int x = -radius; x <= radius; x++) {
+			const float d = texelFetch(oldDepthTex, clamp(texel + ivec2(x, y), ivec2(0), size - 1), 0).x;
+			minDepth = min(minDepth, d);
+			maxDepth = max(maxDepth, d);
+		}
+	}
+	if (maxDepth - minDepth > SEED_MARGIN * minDepth) return 0.0;
+	
+	// The surface must still be there
+	const float seed = dot(oldPosition - eye, dir);
+	if (abs(map(oldPosition)) > SEED_MARGIN * 0.1 * seed) return 0.0;
+	
+	return seed;
+}
+
+void main() {
+	// Get direction vector
+	vec4 ptransform = invVPMatrix * vec4(pos, 1, 1);
+	vec3 dir = normalize((ptransform / ptransform.w).xyz - eye);
+	
+	// Start after the empty space found by the depth prepass
+	float startDepth = EPSILON;
+	if (prepassScale > 0) {
+		startDepth = max(EPSILON, texelFetch(prepassTex, ivec2(gl_FragCoord.xy) / prepassScale, 0).x);
+	}
+	
+	// Start just before the surface seen in the previous frame
+	float seedDepth = 0.0;
+	if (temporalSeed != 0) {
+		seedDepth = temporalSeedDepth(ivec2(gl_FragCoord.xy), dir);
+	}
+	
+	// Primary ray
+	HitInfo hit;
+	hit = intersectScene(eye, dir, max(startDepth, seedDepth * (1.0 - SEED_MARGIN)), MAX_DISTANCE);
+	
+	// Verify the seed, the ray must hit the seeded surface or march again
+	bool rejected = false;
+	if (seedDepth > 0.0 && (!hit.intersect || abs(hit.depth - seedDepth) > SEED_MARGIN * seedDepth)) {
+		const int seededSteps = hit.steps;
+		hit = intersectScene(eye, dir, startDepth, MAX_DISTANCE);
+		hit.steps += seededSteps;
+		rejected = true;
+	}
+	
+	if (collectStepStatistics != 0) {
+		atomicAdd(primarySteps, uint(hit.steps));
+		if (seedDepth > 0.0) atomicAdd(seededPixels, 1u);
+		if (rejected) atomicAdd(rejectedSeeds, 1u);
+	}
+	
+	if (hit.intersect) {		
+		// Write images
+		depthTex    = hit.depth;
+		normalTex   = encodeNormal(hit.normal);
+		materialTex = uint(hit.materialID);
+	} else {
+		// Write images
+		depthTex    = MAX_DISTANCE;
+		normalTex   = encodeNormal(dir);
+		materialTex = SKY_MATERIAL;
+	}
 }
\ No newline at end of file
@@ -1,96 +1,139 @@
-#version 450 core
-
-#include <scene.glsl>
-#include <direct_lighting.glsl>
-
-#define MAX_BOUNCES 	1
-#define PI          	3.14159265359
-#define SQRT2 			1.41421356237
-
-layout(location = 0) out vec4 colorOutput;
-
-layout(binding = 0, location = 0) uniform sampler2D positionDepthTex;
-layout(binding = 1, location = 1) uniform sampler2D normalMaterialTex;
-
-layout(binding = 2, location = 2) uniform sampler2D oldPositionDepthTex;
-layout(binding = 3, location = 3) uniform sampler2D oldNormalMaterialTex;
-
-layout(binding = 4, location = 4) uniform sampler2D oldColorTex;
-
-layout(location = 5) uniform mat4 VPMatrix;
-layout(location = 6) uniform int iFrame;
-
-in vec2 uv;
-
-float nrand(in vec2 n) {
-	return fract(sin(dot(n.xy, vec2(12.9898, 78.233))) * 43758.5453);
-}
-
-vec3 indirectLight(
-	in vec3 pos, 
-	in vec3 normal, 
-	in vec3 albedo,
-	in vec2 seed
-) {
-	vec3 accumulatedColor = vec3(0);
-	vec3 colorMask        = vec3(1);	
-	
-	colorMask = albedo;
-	
-	pos += normal * EPSILON;
-	for (int b = 0; b < MAX_BOUNCES; b++) {
-		// Generate random dir vector
-		vec3 rs     = pos + seed.x;
-		vec3 random = vec3(nrand(rs.xy), nrand(rs.yz), nrand(rs.zx)) * 2.0 - 1.0;
-		vec3 dir    = normalize(normal * SQRT2 + random);
-		
-		// Trace ray
-		HitInfo hit = intersectScene(pos, dir, MAX_DISTANCE);
-		if (hit.intersect) {
-			// Accumulate color
-			colorMask        *= materials[hit.materialID].albedo;
-			accumulatedColor += colorMask * directLight(hit.position, hit.normal); // * min(1.0, 1.0 / hit.depth);
-		
-			// Update next ray position
-			pos = hit.position + hit.normal * EPSILON; // Avoid self intersection
-		} else {
-			const vec3 sunColor = vec3(0.619095, 0.562118, 0.548401);
-			colorMask        *= sunColor;
-			accumulatedColor += colorMask * sunColor;
-			
-			break; // No more geometry, exit path
-		}
-	}
-	
-	return accumulatedColor;
-}
-
-vec2 reproject(in vec3 pos) {
-	vec4 ptransform = VPMatrix * vec4(pos, 1.0);
-	ptransform /= ptransform.w;
-	return (vec2(ptransform.xy) + 1.0) * 0.5;
-}
-
-void main() {
-	// Get GBuffer information
-	const int materialID = int(texture(normalMaterialTex, uv).w);
-	const vec3 normal    = texture(normalMaterialTex, uv).xyz;
-	const vec3 position  = texture(positionDepthTex, uv).xyz;
-	const float depth    = texture(positionDepthTex, uv).w;
-	
-	// Compute seed
-	const vec2 seed = uv + iFrame;
-	
-	// Compute indirect light
-	vec3 color = vec3(0);
-	if (depth < MAX_DISTANCE) {
-		const vec3 GI = indirectLight(position, normal, materials[materialID].albedo, seed);
-		color = GI;
-	}
-	
-	// Get old color
-	const vec3 oldColor = texture(oldColorTex, uv).xyz;
-	
-	// Write color
-	colorOutput = vec4(color, 1.0);
+#version 450 core
+
+#define SECONDARY_DISTANCE_FIELD
+#define DISTANCE_CLIPMAP
+#include <scene.glsl>
+#include <direct_lighting.glsl>
+#include <gbuffer_encoding.glsl>
+
+#define MAX_BOUNCES 	1
+#define PI          	3.14159265359
+#define SQRT2 			1.41421356237
+#define MAX_HISTORY_SAMPLES 64.0
+
+layout(location = 0) out vec4 colorOutput;
+
+layout(binding = 0, location = 0) uniform sampler2D depthTex;
+layout(binding = 1, location = 1) uniform sampler2D normalTex;
+layout(binding = 2, location = 2) uniform usampler2D materialTex;
+
+layout(binding = 3, location = 3) uniform sampler2D oldDepthTex;
+layout(binding = 4, location = 4) uniform sampler2D oldNormalTex;
+
+layout(binding = 6, location = 6) uniform sampler2D oldColorTex;
+
+layout(location = 7) uniform int iFrame;
+layout(location = 8) uniform int indirectScale;
+layout(location = 9) uniform mat4 invVPMatrix;
+layout(location = 10) uniform vec3 eye;
+layout(location = 11) uniform mat4 oldVPMatrix;
+layout(location = 12) uniform mat4 oldInvVPMatrix;
+layout(location = 13) uniform vec3 oldEye;
+
+in vec2 uv;
+
+float nrand(in vec2 n) {
+	return fract(sin(dot(n.xy, vec2(12.9898, 78.233))) * 43758.5453);
+}
+
+vec3 indirectLight(
+	in vec3 pos, 
+	in vec3 normal, 
+	in vec3 albedo,
+	in vec2 seed
+) {
+	vec3 accumulatedColor = vec3(0);
+	vec3 colorMask        = vec3(1);	
+	
+	colorMask = albedo;
+	
+	pos += normal * EPSILON;
+	for (int b = 0; b < MAX_BOUNCES; b++) {
+		// Generate random dir vector
+		vec3 rs     = pos + seed.x;
+		vec3 random = vec3(nrand(rs.xy), nrand(rs.yz), nrand(rs.zx)) * 2.0 - 1.0;
+		vec3 dir    = normalize(normal * SQRT2 + random);
+		
+		// Trace ray
+		HitInfo hit = intersectScene(pos, dir, MAX_DISTANCE);
+		if (hit.intersect) {
+			// Accumulate color
+			colorMask        *= materials[hit.materialID].albedo;
+			accumulatedColor += colorMask * directLight(hit.position, hit.normal); // * min(1.0, 1.0 / hit.depth);
+		
+			// Update next ray position
+			pos = hit.position + hit.normal * EPSILON; // Avoid self intersection
+		} else {
+			const vec3 sunColor = vec3(0.619095, 0.562118, 0.548401);
+			colorMask        *= sunColor;
+			accumulatedColor += colorMask * sunColor;
+			
+			break; // No more geometry, exit path
+		}
+	}
+	
+	return accumulatedColor;
+}
+
+vec2 reproject(in vec3 pos, in mat4 matrix) {
+	vec4 ptransform = matrix * vec4(pos, 1.0);
+	ptransform /= ptransform.w;
+	return (vec2(ptransform.xy) + 1.0) * 0.5;
+}
+
+// Previous indirect light of the same surface point (xyz) with its sample count (w)
+vec4 fetchHistory(in vec3 position, in vec3 normal, in float depth) {
+	if (iFrame == 0) return vec4(0);
+	
+	// Locate the point in the previous frame
+	const vec2 oldUV = reproject(position, oldVPMatrix);
+	if (any(lessThan(oldUV, vec2(0))) || any(greaterThanEqual(oldUV, vec2(1)))) return vec4(0);
+	const ivec2 oldTexel = ivec2(oldUV * vec2(textureSize(oldColorTex, 0)));
+	const ivec2 oldSize  = textureSize(oldDepthTex, 0);
+	const ivec2 oldPixel = min(oldTexel * indirectScale + indirectScale / 2, oldSize - 1);
+	
+	// Reject history shaded on another surface
+	const float oldDepth    = texelFetch(oldDepthTex, oldPixel, 0).x;
+	const vec3 oldNormal    = decodeNormal(texelFetch(oldNormalTex, oldPixel, 0).xy);
+	const vec3 oldPosition  = reconstructPosition(oldPixel, oldSize, oldDepth, oldInvVPMatrix, oldEye);
+	const vec3 offset       = oldPosition - position;
+	if (oldDepth >= MAX_DISTANCE ||
+		abs(dot(offset, normal)) > 0.01 * depth ||
+		length(offset) > 0.05 * depth ||
+		dot(oldNormal, normal) < 0.9) {
+		return vec4(0);
+	}
+	
+	return texelFetch(oldColorTex, oldTexel, 0);
+}
+
+void main() {
+	// Get GBuffer information, one full resolution pixel per indirect texel
+	const ivec2 size  = textureSize(depthTex, 0);
+	const ivec2 pixel = min(ivec2(gl_FragCoord.xy) * indirectScale + indirectScale / 2, size - 1);
+	const int materialID = int(texelFetch(materialTex, pixel, 0).x);
+	const vec3 normal    = decodeNormal(texelFetch(normalTex, pixel, 0).xy);
+	const float depth    = texelFetch(depthTex, pixel, 0).x;
+	const vec3 position  = reconstructPosition(pixel, size, depth, invVPMatrix, eye);
+	
+	// Compute seed, the frame index is wrapped to keep nrand precise
+	const vec2 seed = uv + float(iFrame % 1024);
+	
+	// Compute indirect light
+	vec3 color = vec3(0);
+	if (depth < MAX_DISTANCE) {
+		const vec3 GI = indirectLight(position, normal, materials[materialID].albedo, seed);
+		color = GI;
+	}
+	
+	// Accumulate with the reprojected history
+	float sampleCount = 0.0;
+	if (depth < MAX_DISTANCE) {
+		const vec4 history = fetchHistory(position, normal, depth);
+		sampleCount = min(history.w + 1.0, MAX_HISTORY_SAMPLES);
+		color = mix(history.xyz, color, 1.0 / sampleCount);
+	}
+	
+	// Write color and sample count
+	colorOutput = vec4(color, sampleCount);
 }
\ No newline at end of file
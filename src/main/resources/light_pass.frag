@@ -1,36 +1,93 @@
-#version 450 core
-
-#include <scene.glsl>
-#include <direct_lighting.glsl>
-
-layout(location = 0) out vec4 outputColor;
-
-layout(binding = 0, location = 0) uniform sampler2D positionDepthTex;
-layout(binding = 1, location = 1) uniform sampler2D normalMaterialTex;
-
-layout(binding = 2, location = 2) uniform sampler2D indirectLightTex;
-
-in vec2 uv;
-
-void main() {
-	const vec4 positionDepthData  = texture(positionDepthTex, uv);
-	const vec4 normalMaterialData = texture(normalMaterialTex, uv);
-	
-	if (positionDepthData.w < MAX_DISTANCE) {
-		const vec3 GI        = texture(indirectLightTex, uv).xyz;
-		const int materialID = int(normalMaterialData.w);
-		
-		// Sample position
-		vec3 sunContribution = directLight(positionDepthData.xyz, normalMaterialData.xyz);
-		vec3 color           = materials[materialID].albedo * sunContribution;
-		color               += GI * materials[materialID].albedo;
-		
-		outputColor = vec4(color, 1.0);
-	} else {
-		// Render sky background
-		const vec3 backgroundColor = vec3(1., 163., 236.) / vec3(500);
-		vec3 color = backgroundColor + abs(1.0 - normalMaterialData.y) * 0.4;
-		
-		outputColor = vec4(color, 1.0);
-	}
+#version 450 core
+
+#define SECONDARY_DISTANCE_FIELD
+#define DISTANCE_CLIPMAP
+#include <scene.glsl>
+#include <direct_lighting.glsl>
+#include <gbuffer_encoding.glsl>
+
+layout(location = 0) out vec4 outputColor;
+
+layout(binding = 0, location = 0) uniform sampler2D depthTex;
+layout(binding = 1, location = 1) uniform sampler2D normalTex;
+layout(binding = 2, location = 2) uniform usampler2D materialTex;
+
+layout(binding = 3, location = 3) uniform sampler2D indirectLightTex;
+layout(location = 4) uniform int indirectScale;
+layout(location = 5) uniform mat4 invVPMatrix;
+layout(location = 6) uniform vec3 eye;
+
+in vec2 uv;
+
+// Full resolution pixel the indirect light pass sampled for a texel
+ivec2 guidePixel(in ivec2 texel) {
+	return min(texel * indirectScale + indirectScale / 2, textureSize(depthTex, 0) - 1);
+}
+
+// Bilateral upsampling of the indirect light, guided by depth and normal
+vec3 upsampleIndirectLight(in ivec2 pixel, in float depth, in vec3 normal) {
+	if (indirectScale == 1) {
+		return texelFetch(indirectLightTex, pixel, 0).xyz;
+	}
+	
+	const vec2 lowPosition = (vec2(pixel) - float(indirectScale / 2)) / float(indirectScale);
+	const ivec2 base       = ivec2(floor(lowPosition));
+	const vec2 f           = lowPosition - vec2(base);
+	const ivec2 lowSize    = textureSize(indirectLightTex, 0);
+	
+	vec3 colorSum     = vec3(0);
+	float weightSum   = 0.0;
+	vec3 nearest      = vec3(0);
+	float nearestDelta = MAX_DISTANCE;
+	for (int y = 0; y < 2; y++) {
+		for (int x = 0; x < 2; x++) {
+			const ivec2 texel       = clamp(base + ivec2(x, y), ivec2(0), lowSize - 1);
+			const ivec2 guide       = guidePixel(texel);
+			const float guideDepth  = texelFetch(depthTex, guide, 0).x;
+			const vec3 guideNormal  = decodeNormal(texelFetch(normalTex, guide, 0).xy);
+			const vec3 color        = texelFetch(indirectLightTex, texel, 0).xyz;
+			
+			const float depthDelta   = abs(guideDepth - depth);
+			const float bilinear     = (x == 0 ? 1.0 - f.x : f.x) * (y == 0 ? 1.0 - f.y : f.y);
+			const float depthWeight  = exp(-depthDelta / (0.05 * depth + EPSILON));
+			const float normalWeight = pow(max(dot(guideNormal, normal), 0.0), 16.0);
+			const float weight       = bilinear * depthWeight * normalWeight;
+			
+			colorSum  += color * weight;
+			weightSum += weight;
+			if (depthDelta < nearestDelta) {
+				nearestDelta = depthDelta;
+				nearest      = color;
+			}
+		}
+	}
+	
+	// No neighbour on the same surface, keep the closest one in depth
+	if (weightSum < 1e-4) return nearest;
+	return colorSum / weightSum;
+}
+
+void main() {
+	const ivec2 pixel  = ivec2(gl_FragCoord.xy);
+	const float depth  = texelFetch(depthTex, pixel, 0).x;
+	const vec3 normal  = decodeNormal(texelFetch(normalTex, pixel, 0).xy);
+	
+	if (depth < MAX_DISTANCE) {
+		const vec3 position  = reconstructPosition(pixel, textureSize(depthTex, 0), depth, invVPMatrix, eye);
+		const vec3 GI        = upsampleIndirectLight(pixel, depth, normal);
+		const int materialID = int(texelFetch(materialTex, pixel, 0).x);
+		
+		// Sample position
+		vec3 sunContribution = directLight(position, normal);
+		vec3 color           = materials[materialID].albedo * sunContribution;
+		color               += GI * materials[materialID].albedo;
+		
+		outputColor = vec4(color, 1.0);
+	} else {
+		// Render sky background
+		const vec3 backgroundColor = vec3(1., 163., 236.) / vec3(500);
+		vec3 color = backgroundColor + abs(1.0 - normal.y) * 0.4;
+		
+		outputColor = vec4(color, 1.0);
+	}
 }
\ No newline at end of file
@@ -1,126 +1,375 @@
-#define MAX_RAYMARCH_STEP  512
-#define MAX_DISTANCE       300
-#define MIN_HIT_DISTANCE   0.0001
-#define MAX_SHAPE_COUNT    128
-#define MAX_MATERIAL_COUNT 64
-#define MAX_INSTANCE_COUNT 128
-#define EPSILON            0.005
-
-/* ------------- Structures --------------- */
-struct Material {
-    vec3 albedo;	 // 12 0
-    float roughness; // 4  12
-	float metallic;  // 4  16
-	int _pad0;		 // 4  20
-	int _pad1;		 // 4  24
-	int _pad2;		 // 4  28
-	// total 32
-};
-
-struct Shape {
-    int type;       // 4  0
-    int materialID; // 4  4
-    int _pad0;      // 4  8
-    int _pad1;      // 4  12
-    vec3 position;  // 12 16
-    vec4 f0;        // 16 32
-    vec4 f1;        // 16 48
-	// total 52
-};
-
-/* ------------- UBO ---------------------- */
-layout(binding = 0, std140) uniform LayoutHeader {
-    int materialCount;
-    int shapeCount;
-};
-
-layout(binding = 1, std140) uniform Materials {
-    Material materials[MAX_MATERIAL_COUNT];
-};
-
-layout(binding = 2, std140) uniform Shapes {
-    Shape shapes[MAX_SHAPE_COUNT];
-};
-
-/* ------------ SHAPES SDF --------- */
-
-#SHAPE_SD_FUNCTIONS_TOKEN
-
-/* ----------- SCENE -------------- */
-
-#MAP_SD_FUNCTION_TOKEN
-
-float map(in vec3 p) {
-    float sd = MAX_DISTANCE;
-    for (int i = 0; i < shapeCount; i++) {
-        sd = min(sd, sdShape(p - shapes[i].position.xyz, shapes[i]));
-    }
-    return sd;
-}
-float mapShape(in vec3 p, out int shapeID) {
-    float sd = MAX_DISTANCE;
-    float s;
-    for (int i = 0; i < shapeCount; i++) {
-        if ((s = sdShape(p - shapes[i].position.xyz, shapes[i])) < sd) {
-            sd = s;
-            shapeID = i;
-        }
-    }
-    return sd;
-}
-
-vec3 normalScene(in vec3 p, in float sd) {
-#if 1
-    const vec2 e = vec2(EPSILON, 0);
-    return normalize(vec3(
-        sd - map(vec3(p - e.xyy)),
-        sd - map(vec3(p - e.yxy)),
-        sd - map(vec3(p - e.yyx))
-    ));
-#else
-    vec3 n = vec3(0.0);
-    for(int i = 0; i < 4; i++) {
-        vec3 e = 0.5773 * (2.0 * vec3((((i + 3) >> 1) & 1),((i >> 1) & 1),(i & 1)) - 1.0);
-        n += e * map(p + 0.0005 * e).x;
-    }
-    return normalize(n);
-#endif
-}
-
-struct HitInfo {
-	vec3 position;   // Relevant if intersect
-	int materialID;  // Relevant if intersect
-	vec3 normal;     // Relevant if intersect
-	int shapeID;	 // Relevant if intersect
-	float depth;     // Relevant if intersect or maxDepth instead
-	bool intersect;
-};
-
-HitInfo intersectScene(in vec3 p, in vec3 dir, in float maxDepth) {
-	HitInfo hit;
-	
-	hit.intersect = false;
-	hit.depth     = EPSILON;
-	
-	float sd;
-	for (int step = 0; step < MAX_RAYMARCH_STEP; step++) {
-		hit.position = p + hit.depth * dir;
-		sd = mapShape(hit.position, hit.shapeID);
-		if (sd < MIN_HIT_DISTANCE) {
-			hit.intersect = true;
-			break;
-		}
-		hit.depth += sd;
-		if (hit.depth > maxDepth) {
-			hit.depth = maxDepth;
-			break;
-		}
-	}
-	
-	if (hit.intersect) {
-		hit.normal     = normalScene(hit.position, sd);
-		hit.materialID = shapes[hit.shapeID].materialID;
-	}
-	
-	return hit;
+#define MAX_RAYMARCH_STEP  512
+#define MAX_DISTANCE       300
+#define MIN_HIT_DISTANCE   0.0001
+#define MAX_INSTANCE_COUNT 1024
+#define EPSILON            0.005
+#define BVH_STACK_SIZE     32
+
+/* ------------- Structures --------------- */
+struct Material {
+    vec3 albedo;	 // 12 0
+    float roughness; // 4  12
+	float metallic;  // 4  16
+	int _pad0;		 // 4  20
+	int _pad1;		 // 4  24
+	int _pad2;		 // 4  28
+	// total 32
+};
+
+struct Shape {
+    int type;       // 4  0
+    int materialID; // 4  4
+    int instanceOffset; // 4  8 (header slot, relevant if instanceCount != 0)
+    int instanceCount;  // 4  12 (0 if single, REPEATED_SHAPE if repeated)
+    vec3 position;  // 12 16
+    vec4 f0;        // 16 32
+    vec4 f1;        // 16 48
+	// total 52
+};
+
+struct Instance {
+    vec3 position;  // 12 0
+    float scale;    // 4  12
+    vec4 rotation;  // 16 16 (quaternion)
+	// total 32
+};
+
+struct BVHNode {
+    vec3 boundsMin; // 12 0
+    int index;      // 4  12 (shape if leaf, first child otherwise)
+    vec3 boundsMax; // 12 16
+    int count;      // 4  28 (0 if internal node)
+	// total 32
+};
+
+/* ------------- UBO ---------------------- */
+layout(binding = 0, std140) uniform LayoutHeader {
+    int materialCount;
+    int shapeCount;
+    int bvhNodeCount;
+    int unboundedShapeCount;
+};
+
+/* ------------- SSBO --------------------- */
+layout(binding = 1, std430) buffer Materials {
+    Material materials[];
+};
+
+layout(binding = 2, std430) buffer Shapes {
+    Shape shapes[];
+};
+
+layout(binding = 3, std430) buffer BVH {
+    BVHNode nodes[];
+};
+
+layout(binding = 7, std430) buffer Instances {
+    Instance instances[];
+};
+
+// Same storage, the instance tree of a shape follows its transforms
+layout(binding = 7, std430) buffer InstanceNodes {
+    BVHNode instanceNodes[];
+};
+
+#ifdef TILE_SHAPE_LISTS
+#define TILE_SIZE 32
+
+struct TileList {
+    int offset; // 4 0
+    int count;  // 4 4
+	// total 8
+};
+
+layout(binding = 4, std430) buffer Tiles {
+    TileList tiles[];
+};
+
+layout(binding = 5, std430) buffer TileShapes {
+    int tileShapes[];
+};
+
+layout(location = 2) uniform int tileCountX;
+#endif
+
+/* ------------ SHAPES SDF --------- */
+
+#SHAPE_SD_FUNCTIONS_TOKEN
+
+/* ----------- SCENE -------------- */
+
+#MAP_SD_FUNCTION_TOKEN
+
+#define REPEATED_SHAPE -1
+
+float sdBounds(in vec3 p, in BVHNode node) {
+    vec3 d = max(node.boundsMin - p, p - node.boundsMax);
+    return length(max(d, 0.0));
+}
+
+float sdInstance(in vec3 p, in Instance instance, in Shape shape) {
+    vec3 q = p - instance.position;
+    const vec3 u = -instance.rotation.xyz;
+    q += 2.0 * cross(u, cross(u, q) + instance.rotation.w * q);
+    return sdShape(q / instance.scale, shape) * instance.scale;
+}
+
+// Shape evaluated with its instances or its domain repetition
+float sdSceneShape(in vec3 p, in Shape shape) {
+    p -= shape.position;
+    if (shape.instanceCount == 0) return sdShape(p, shape);
+
+    // Header : repetition period, template radius (negative if unbounded) and repetition count (0 if infinite)
+    const Instance header = instances[shape.instanceOffset];
+    if (shape.instanceCount == REPEATED_SHAPE) {
+        // Nearest cell and its neighbours toward p, an off-center template may be closer in either
+        const vec3 period = header.position;
+        const bvec3 finite = greaterThan(header.rotation.xyz, vec3(0.0));
+        const vec3 last = header.rotation.xyz - 1.0;
+        const vec3 cell = mix(round(p / period), clamp(round(p / period), vec3(0.0), last), finite);
+        const vec3 q = p - period * cell;
+        const vec3 side = mix(vec3(-1.0), vec3(1.0), greaterThanEqual(q, vec3(0.0)));
+
+        // The other cells are a period further along one axis
+        const vec3 far = sqrt(dot(q, q) + period * (period + 2.0 * abs(q)));
+        float sd = header.scale >= 0.0 ? min(far.x, min(far.y, far.z)) - header.scale : MAX_DISTANCE;
+        for (int i = 0; i < 8; i++) {
+            vec3 neighbour = cell + side * vec3(i & 1, (i >> 1) & 1, (i >> 2) & 1);
+            neighbour = mix(neighbour, clamp(neighbour, vec3(0.0), last), finite);
+            sd = min(sd, sdShape(p - period * neighbour, shape));
+        }
+        return sd;
+    }
+
+    float sd = MAX_DISTANCE;
+    const int first = shape.instanceOffset + 1;
+    const int count = min(shape.instanceCount, MAX_INSTANCE_COUNT);
+    if (header.scale >= 0.0 && count > 1) {
+        // Skip subtrees whose bounds are farther than the closest instance
+        const int root = first + count;
+        int stack[BVH_STACK_SIZE];
+        int top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            const BVHNode node = instanceNodes[stack[--top]];
+            if (sdBounds(p, node) >= sd) continue;
+            if (node.count > 0) {
+                sd = min(sd, sdInstance(p, instances[first + node.index], shape));
+            } else {
+                stack[top++] = root + node.index + 1;
+                stack[top++] = root + node.index;
+            }
+        }
+        return sd;
+    }
+
+    // Unbounded templates cannot be culled
+    for (int i = first; i < first + count; i++) {
+        sd = min(sd, sdInstance(p, instances[i], shape));
+    }
+    return sd;
+}
+
+#COMPILED_SCENE_TOKEN
+
+#if defined(COMPILED_SCENE)
+// Unrolled scene generated by ShaderGenerator
+#elif defined(TILE_SHAPE_LISTS)
+float mapShape(in vec3 p, out int shapeID) {
+    float sd = MAX_DISTANCE;
+    float s;
+    shapeID = 0;
+
+    // Only the shapes whose bounds cover the current screen tile
+    const ivec2 tile = ivec2(gl_FragCoord.xy) / TILE_SIZE;
+    const TileList list = tiles[tile.y * tileCountX + tile.x];
+    for (int i = list.offset; i < list.offset + list.count; i++) {
+        const int shape = tileShapes[i];
+        if ((s = sdSceneShape(p, shapes[shape])) < sd) {
+            sd = s;
+            shapeID = shape;
+        }
+    }
+    return sd;
+}
+#else
+float mapShape(in vec3 p, out int shapeID) {
+    float sd = MAX_DISTANCE;
+    float s;
+    shapeID = 0;
+
+    // Unbounded shapes are always evaluated
+    for (int i = 0; i < unboundedShapeCount; i++) {
+        const int shape = nodes[i].index;
+        if ((s = sdSceneShape(p, shapes[shape])) < sd) {
+            sd = s;
+            shapeID = shape;
+        }
+    }
+
+    // Skip subtrees whose bounds are farther than the closest shape
+    if (bvhNodeCount > unboundedShapeCount) {
+        int stack[BVH_STACK_SIZE];
+        int top = 0;
+        stack[top++] = unboundedShapeCount;
+        while (top > 0) {
+            const BVHNode node = nodes[stack[--top]];
+            if (sdBounds(p, node) >= sd) continue;
+            if (node.count > 0) {
+                if ((s = sdSceneShape(p, shapes[node.index])) < sd) {
+                    sd = s;
+                    shapeID = node.index;
+                }
+            } else {
+                stack[top++] = node.index + 1;
+                stack[top++] = node.index;
+            }
+        }
+    }
+    return sd;
+}
+#endif
+float map(in vec3 p) {
+    int shapeID;
+    return mapShape(p, shapeID);
+}
+
+#ifdef SECONDARY_DISTANCE_FIELD
+layout(binding = 10, location = 20) uniform sampler3D distanceFieldTex;
+layout(location = 21) uniform int distanceFieldEnabled;
+layout(location = 22) uniform vec3 distanceFieldMin;
+layout(location = 23) uniform vec3 distanceFieldMax;
+
+// Lower bound of the scene distance from the baked field, negative near
+// surfaces and outside the baked bounds where map() is required
+float sampleDistanceField(in vec3 p) {
+    if (distanceFieldEnabled == 0) return -1.0;
+    const vec3 extent = distanceFieldMax - distanceFieldMin;
+    const vec3 uvw = (p - distanceFieldMin) / extent;
+    if (any(lessThan(uvw, vec3(0.0))) || any(greaterThan(uvw, vec3(1.0)))) return -1.0;
+
+    // Samples sit on grid corners, trilinear error stays below a voxel diagonal
+    const vec3 size = vec3(textureSize(distanceFieldTex, 0));
+    const float voxel = length(extent / (size - 1.0));
+    const float sd = texture(distanceFieldTex, (uvw * (size - 1.0) + 0.5) / size).x - voxel;
+    return sd > voxel ? sd : -1.0;
+}
+#endif
+
+#ifdef DISTANCE_CLIPMAP
+#define CLIPMAP_LEVEL_COUNT 4
+#define SQRT3 1.73205080757
+
+// Levels from finest to coarsest, each one a camera centered window stored toroidally
+layout(binding = 11, location = 24) uniform sampler3D clipmapTex[CLIPMAP_LEVEL_COUNT];
+layout(location = 28) uniform vec4 clipmapLevels[CLIPMAP_LEVEL_COUNT]; // xyz window origin in voxels, w voxel size (0 if not ready)
+
+// Lower bound of the scene distance from the finest clipmap level containing p,
+// negative near surfaces and outside every level where map() is required,
+// and within the finest level too when CLIPMAP_FAR_FIELD is defined
+float sampleClipmap(in vec3 p) {
+    for (int level = 0; level < CLIPMAP_LEVEL_COUNT; level++) {
+        const float voxel = clipmapLevels[level].w;
+#ifdef CLIPMAP_FAR_FIELD
+        // Primary rays keep the analytic distance within the finest level, it steps further than the samples
+        if (level == 0 && voxel == 0.0) return -1.0;
+#endif
+        if (voxel == 0.0) continue;
+        const float size = float(textureSize(clipmapTex[level], 0).x);
+        const vec3 local = p / voxel - clipmapLevels[level].xyz;
+        if (any(lessThan(local, vec3(0.0))) || any(greaterThan(local, vec3(size - 1.0)))) continue;
+#ifdef CLIPMAP_FAR_FIELD
+        if (level == 0) return -1.0;
+#endif
+
+        // Repeat wrapping keeps neighbouring voxels adjacent across the toroidal seam
+        const vec3 texel = local + mod(clipmapLevels[level].xyz, size) + 0.5;
+        const float sd = texture(clipmapTex[level], texel / size).x - voxel * SQRT3;
+        return sd > voxel * SQRT3 ? sd : -1.0;
+    }
+    return -1.0;
+}
+#endif
+
+// Conservative distance from the precomputed fields, negative where map() is required
+float boundScene(in vec3 p) {
+    float sd = -1.0;
+#ifdef SECONDARY_DISTANCE_FIELD
+    sd = sampleDistanceField(p);
+#endif
+#ifdef DISTANCE_CLIPMAP
+    if (sd < 0.0) sd = sampleClipmap(p);
+#endif
+    return sd;
+}
+
+// Distance used by secondary rays, precomputed far from surfaces when available
+float mapSecondary(in vec3 p) {
+    const float sd = boundScene(p);
+    if (sd >= 0.0) return sd;
+    return map(p);
+}
+
+vec3 normalScene(in vec3 p, in float sd) {
+#if 1
+    const vec2 e = vec2(EPSILON, 0);
+    return normalize(vec3(
+        sd - map(vec3(p - e.xyy)),
+        sd - map(vec3(p - e.yxy)),
+        sd - map(vec3(p - e.yyx))
+    ));
+#else
+    vec3 n = vec3(0.0);
+    for(int i = 0; i < 4; i++) {
+        vec3 e = 0.5773 * (2.0 * vec3((((i + 3) >> 1) & 1),((i >> 1) & 1),(i & 1)) - 1.0);
+        n += e * map(p + 0.0005 * e).x;
+    }
+    return normalize(n);
+#endif
+}
+
+struct HitInfo {
+	vec3 position;   // Relevant if intersect
+	int materialID;  // Relevant if intersect
+	vec3 normal;     // Relevant if intersect
+	int shapeID;	 // Relevant if intersect
+	float depth;     // Relevant if intersect or maxDepth instead
+	bool intersect;
+	int steps;       // Number of map evaluations
+};
+
+HitInfo intersectScene(in vec3 p, in vec3 dir, in float minDepth, in float maxDepth) {
+	HitInfo hit;
+	
+	hit.intersect = false;
+	hit.depth     = minDepth;
+	hit.steps     = 0;
+	
+	float sd;
+	for (int step = 0; step < MAX_RAYMARCH_STEP; step++) {
+		hit.steps++;
+		hit.position = p + hit.depth * dir;
+		sd = boundScene(hit.position);
+		if (sd < 0.0) sd = mapShape(hit.position, hit.shapeID);
+		if (sd < MIN_HIT_DISTANCE) {
+			hit.intersect = true;
+			break;
+		}
+		hit.depth += sd;
+		if (hit.depth > maxDepth) {
+			hit.depth = maxDepth;
+			break;
+		}
+	}
+	
+	if (hit.intersect) {
+		hit.normal     = normalScene(hit.position, sd);
+		hit.materialID = shapes[hit.shapeID].materialID;
+	}
+	
+	return hit;
+}
+
+HitInfo intersectScene(in vec3 p, in vec3 dir, in float maxDepth) {
+	return intersectScene(p, dir, EPSILON, maxDepth);
 }
\ No newline at end of file
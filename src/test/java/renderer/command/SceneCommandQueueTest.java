@@ -0,0 +1,129 @@
+package renderer.command;
+
+import org.junit.jupiter.api.Test;
+import renderer.RenderMaterial;
+import renderer.RenderShape;
+import renderer.RenderShapeType;
+import renderer.asset.AssetManager;
+import renderer.entity.SceneManager;
+import renderer.entity.Shape;
+import shape.SphereShape;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SceneCommandQueueTest {
+
+    private final static int PRODUCER_COUNT = 8;
+    private final static int ROUND_COUNT = 200;
+    private final static int SHAPES_PER_ROUND = 50;
+    private final static int MOVES_PER_SHAPE = 4;
+
+    @Test
+    void concurrentProducers() throws InterruptedException {
+        // Headless managers, the queue is drained straight into the scene without a GPU
+        SceneManager sceneManager = new SceneManager();
+        SceneCommandTarget target = new SceneCommandTarget() {
+            @Override
+            public RenderShape createShape() {
+                return sceneManager.createShape();
+            }
+
+            @Override
+            public void removeShape(RenderShape shape) {
+                sceneManager.removeShape((Shape)shape);
+            }
+        };
+        RenderShapeType sphere = new SphereShape.Type();
+        RenderMaterial material = new AssetManager().createMaterial();
+
+        SceneCommandQueue queue = new SceneCommandQueue();
+        AtomicInteger aliveCount = new AtomicInteger();
+        // Shapes handed over between producers, any of them may remove a shape created by another
+        ConcurrentLinkedQueue<RenderShape> shared = new ConcurrentLinkedQueue<>();
+        ConcurrentLinkedQueue<RenderShape> removed = new ConcurrentLinkedQueue<>();
+        ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < PRODUCER_COUNT; p++) {
+            Random random = new Random(p);
+            Thread producer = new Thread(() -> {
+                for (int round = 0; round < ROUND_COUNT; round++) {
+                    List<RenderShape> shapes = new ArrayList<>();
+                    for (int i = 0; i < SHAPES_PER_ROUND; i++) {
+                        RenderShape shape = queue.createShape();
+                        shape.setType(sphere);
+                        shape.setMaterial(material);
+                        shape.setF0(0, 0, 0, 0.2f);
+                        for (int m = 0; m < MOVES_PER_SHAPE; m++) {
+                            shape.setPosition(random.nextFloat() * 100 - 50, random.nextFloat() * 100 - 50,
+                                    random.nextFloat() * 100 - 50);
+                        }
+                        shapes.add(shape);
+                    }
+                    aliveCount.addAndGet(shapes.size());
+
+                    // Remove half of the own shapes, hand the others over
+                    for (int i = 0; i < shapes.size(); i++) {
+                        if (i % 2 == 0) {
+                            queue.removeShape(shapes.get(i));
+                            removed.add(shapes.get(i));
+                            aliveCount.decrementAndGet();
+                        } else {
+                            shared.add(shapes.get(i));
+                        }
+                    }
+
+                    // Remove some shapes created by the other producers
+                    for (int i = 0; i < SHAPES_PER_ROUND / 4; i++) {
+                        RenderShape shape = shared.poll();
+                        if (shape == null) break;
+                        queue.removeShape(shape);
+                        removed.add(shape);
+                        aliveCount.decrementAndGet();
+                    }
+                }
+            }, "producer-" + p);
+            producer.setUncaughtExceptionHandler((thread, e) -> failures.add(e));
+            producers.add(producer);
+        }
+
+        // Drain while the producers record, every drain applies what is queued so far
+        for (Thread producer : producers) {
+            producer.start();
+        }
+        boolean running = true;
+        while (running) {
+            queue.drain(target);
+            running = false;
+            for (Thread producer : producers) {
+                running |= producer.isAlive();
+            }
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        queue.drain(target);
+        assertTrue(failures.isEmpty(), () -> "producer failed: " + failures.peek());
+
+        // Everything recorded was applied exactly once
+        assertEquals(aliveCount.get(), sceneManager.getShapeCount());
+        assertEquals(0, queue.getDroppedCount());
+        for (RenderShape shape : removed) {
+            assertEquals(-1, shape.getIndex(), "removed shape still has a slot");
+        }
+        BitSet slots = new BitSet();
+        for (RenderShape shape : shared) {
+            int index = shape.getIndex();
+            assertTrue(index >= 0 && index < sceneManager.getShapeCount() && !slots.get(index),
+                    "live shape has invalid slot " + index);
+            slots.set(index);
+        }
+    }
+}
\ No newline at end of file